@@ -0,0 +1,110 @@
+package org.byteworks.lexer;
+
+/**
+ * The scanner Lexer used before the character class table: an if/else chain over Character.isWhitespace, isDigit and
+ * isAlphabetic for every character. Kept only as the baseline for {@link LexerBenchmark}.
+ */
+class IfElseScanner {
+    private final String input;
+    private int pos;
+    private int tokenStart;
+
+    IfElseScanner(final String input) {
+        this.input = input;
+    }
+
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    TokenType scanType() {
+        if (!available()) {
+            tokenStart = pos;
+            return TokenType.EOF;
+        }
+        char ch = read_ch();
+        while (Character.isWhitespace(ch) && available()) {
+            if (ch == '\n') {
+                return TokenType.EOL;
+            }
+            ch = read_ch();
+        }
+        if (Character.isWhitespace(ch) && !available()) {
+            return TokenType.EOF;
+        }
+        tokenStart = pos - 1;
+        if (Character.isDigit(ch)) {
+            while (available() && Character.isDigit(peek_ch())) {
+                pos++;
+            }
+            return TokenType.NUMBER;
+        } else if (isIdentifierOrSymbolCharacter(ch)) {
+            while (available() && isIdentifierOrSymbolCharacter(peek_ch())) {
+                pos++;
+            }
+            if (pos - tokenStart == 2 && input.startsWith("fn", tokenStart)) {
+                return TokenType.FUNCTION_DEFINITION;
+            }
+            return TokenType.IDENTIFIER;
+        } else if (ch == '+') {
+            if (consumeIf('+')) {
+                return TokenType.PLUSPLUS;
+            }
+            return TokenType.PLUS;
+        } else if (ch == '-') {
+            if (consumeIf('-')) {
+                return TokenType.MINUSMINUS;
+            } else if (consumeIf('>')) {
+                return TokenType.ARROW;
+            }
+            return TokenType.MINUS;
+        } else if (ch == '*') {
+            return TokenType.MULTIPLY;
+        } else if (ch == '/') {
+            return TokenType.DIVIDE;
+        } else if (ch == '(') {
+            return TokenType.LPAREN;
+        } else if (ch == ')') {
+            return TokenType.RPAREN;
+        } else if (ch == '=') {
+            return TokenType.ASSIGNMENT;
+        } else if (ch == ',') {
+            return TokenType.COMMA;
+        } else if (ch == '{') {
+            return TokenType.LBRACE;
+        } else if (ch == '}') {
+            return TokenType.RBRACE;
+        } else if (ch == ':') {
+            return TokenType.COLON;
+        }
+        return TokenType.UNKNOWN;
+    }
+
+    private boolean isIdentifierOrSymbolCharacter(char ch) {
+        return Character.isAlphabetic(ch) || '_' == ch;
+    }
+
+    private char peek_ch() {
+        return input.charAt(pos);
+    }
+
+    private boolean consumeIf(char tokenChar) {
+        if (available() && tokenChar == peek_ch()) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private char read_ch() {
+        return input.charAt(pos++);
+    }
+
+    private boolean available() {
+        return pos < input.length();
+    }
+}
@@ -0,0 +1,62 @@
+package org.byteworks.lexer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.xl.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans 10 MB of generated XL into a TokenStream with the table-driven Lexer and with the old if/else chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LexerBenchmark {
+    private static final int CORPUS_SIZE = 10 * 1024 * 1024;
+
+    private String corpus;
+
+    @Setup
+    public void setUp() {
+        corpus = Corpus.script(CORPUS_SIZE, 42);
+    }
+
+    @Benchmark
+    public int ifElseChain() {
+        IfElseScanner scanner = new IfElseScanner(corpus);
+        TokenStream.Builder builder = new TokenStream.Builder(corpus);
+        TokenType type;
+        do {
+            type = scanner.scanType();
+            builder.add(type, scanner.tokenStart(), scanner.position());
+        } while (type != TokenType.EOF);
+        return builder.build().size();
+    }
+
+    @Benchmark
+    public int tableDriven() {
+        return new Lexer(corpus).tokenize().size();
+    }
+
+    @Benchmark
+    public int tableDrivenTokens() {
+        Lexer lexer = new Lexer(corpus);
+        int tokens = 0;
+        while (lexer.next().getType() != TokenType.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+}
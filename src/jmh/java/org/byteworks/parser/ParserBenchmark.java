@@ -0,0 +1,68 @@
+package org.byteworks.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.TokenStream;
+import org.byteworks.xl.parser.XLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses deep input (nested parentheses around a negated literal) and wide input (one long sum) with the stack-based
+ * parser and with the old recursive one, which overflows the default thread stack in the low thousands of levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParserBenchmark {
+    @Param({ "100", "1000" })
+    public int depth;
+
+    @Param({ "100000" })
+    public int width;
+
+    private String deep;
+    private String wide;
+    private TokenStream deepTokens;
+    private TokenStream wideTokens;
+
+    @Setup
+    public void setUp() {
+        deep = "(- ".repeat(depth) + "1" + ")".repeat(depth);
+        wide = "1" + " + 1".repeat(width - 1);
+        deepTokens = TokenStream.of(deep);
+        wideTokens = TokenStream.of(wide);
+    }
+
+    @Benchmark
+    public Node deepStack() {
+        return XLParser.createParser(deepTokens.cursor(), null).parse(0);
+    }
+
+    @Benchmark
+    public Node deepRecursive() {
+        return new RecursiveParser<>(XLParser.<Node>grammar(), deepTokens.cursor(), null).parse(0);
+    }
+
+    @Benchmark
+    public Node wideStack() {
+        return XLParser.createParser(wideTokens.cursor(), null).parse(0);
+    }
+
+    @Benchmark
+    public Node wideRecursive() {
+        return new RecursiveParser<>(XLParser.<Node>grammar(), wideTokens.cursor(), null).parse(0);
+    }
+}
@@ -0,0 +1,35 @@
+package org.byteworks.parser;
+
+import java.io.PrintStream;
+
+import org.byteworks.lexer.Token;
+import org.byteworks.lexer.TokenSource;
+import org.byteworks.parser.rule.NodeParseRule;
+
+/**
+ * The Pratt loop as it was before {@link ParseStack}: every nested parse recurses through the rules and back into
+ * {@link #parse(int)} on the Java stack. Kept as a baseline for the parser benchmarks.
+ */
+public class RecursiveParser<T> extends Parser<T> {
+    private final ParseContext<T> parseContext;
+
+    public RecursiveParser(Grammar<T> grammar, TokenSource lexer, PrintStream debugStream) {
+        super(grammar, lexer, debugStream);
+        this.parseContext = new ParseContext<>(this, lexer, debugStream);
+    }
+
+    @Override
+    public T parse(final int precedence) {
+        Token token = parseContext.nextToken();
+        NodeParseRule<T, T> prefixParseRule = getGrammar().prefixRule(token.getType());
+        if (prefixParseRule == null) {
+            throw new IllegalArgumentException("No prefix parser registered for token " + token);
+        }
+        T node = parseContext.parsePrefix(prefixParseRule);
+        while (infixPrecedence(parseContext.lexer.peekType()) >= precedence) {
+            token = parseContext.nextToken();
+            node = parseContext.parseInfix(getGrammar().infixRule(token.getType()));
+        }
+        return node;
+    }
+}
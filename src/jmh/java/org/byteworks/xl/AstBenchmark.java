@@ -0,0 +1,125 @@
+package org.byteworks.xl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.TokenStream;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.interpreter.XLInterpreter;
+import org.byteworks.xl.parser.FlatAst;
+import org.byteworks.xl.parser.XLParser;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.UnaryOpNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares node objects with a {@link FlatAst} for 1 MB of generated XL: building each from the same tokens, walking
+ * every expression, and running the script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AstBenchmark {
+    private static final int CORPUS_SIZE = 1024 * 1024;
+
+    private static final PrintStream NOWHERE = new PrintStream(OutputStream.nullOutputStream());
+
+    private TokenStream tokens;
+    private List<Node> nodes;
+    private FlatAst flat;
+
+    @Setup
+    public void setUp() {
+        tokens = TokenStream.of(Corpus.script(CORPUS_SIZE, 42));
+        nodes = XLParser.createParser(tokens.cursor(), null).parse();
+        flat = XLParser.createParser(tokens.cursor(), null).parseFlat();
+    }
+
+    @Benchmark
+    public List<Node> parseNodes() {
+        return XLParser.createParser(tokens.cursor(), null).parse();
+    }
+
+    @Benchmark
+    public FlatAst parseFlat() {
+        return XLParser.createParser(tokens.cursor(), null).parseFlat();
+    }
+
+    @Benchmark
+    public long walkNodes() {
+        long sum = 0;
+        for (Node node : nodes) {
+            sum += sumLiterals(node);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long walkFlat() {
+        long sum = 0;
+        for (int i = 0; i < flat.statementCount(); i++) {
+            sum += sumLiterals(flat.statement(i));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void interpretNodes() {
+        new XLInterpreter().exec(nodes, NOWHERE);
+    }
+
+    @Benchmark
+    public void interpretFlat() {
+        new XLInterpreter().exec(flat, NOWHERE);
+    }
+
+    // both walks only descend through operators, which is where nearly all of the corpus's nodes are
+
+    private long sumLiterals(Node node) {
+        if (node instanceof LiteralNode) {
+            return ((LiteralNode) node).getValue();
+        } else if (node instanceof BinaryOpNode) {
+            return sumLiterals(((BinaryOpNode) node).getLhs()) + sumLiterals(((BinaryOpNode) node).getRhs());
+        } else if (node instanceof UnaryOpNode) {
+            return sumLiterals(((UnaryOpNode) node).getExpr());
+        }
+        return 0;
+    }
+
+    private long sumLiterals(int node) {
+        switch (flat.kind(node)) {
+        case FlatAst.LITERAL:
+            return flat.literal(node);
+        case FlatAst.PLUS:
+        case FlatAst.MINUS:
+        case FlatAst.MULTIPLY:
+        case FlatAst.DIVIDE:
+        case FlatAst.ASSIGNMENT:
+            return sumLiterals(flat.left(node)) + sumLiterals(flat.right(node));
+        case FlatAst.NEGATIVE_SIGNED:
+        case FlatAst.POSITIVE_SIGNED:
+        case FlatAst.PRE_INCREMENT:
+        case FlatAst.PRE_DECREMENT:
+        case FlatAst.POST_INCREMENT:
+        case FlatAst.POST_DECREMENT:
+            return sumLiterals(flat.operand(node));
+        default:
+            return 0;
+        }
+    }
+}
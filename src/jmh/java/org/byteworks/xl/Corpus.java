@@ -0,0 +1,87 @@
+package org.byteworks.xl;
+
+import java.util.Random;
+
+/**
+ * Generates valid XL scripts for the benchmarks: assignments of arithmetic over variables already assigned, with a
+ * function definition and calls to it mixed in.
+ */
+public class Corpus {
+    private static final String FUNCTION = "f = fn a:Number b:Number -> Number { a * b + 3 }\n";
+
+    private final Random random;
+    private final StringBuilder sb = new StringBuilder();
+    private int variables;
+
+    private Corpus(final long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * A script of at least <code>chars</code> characters; the same seed always produces the same script.
+     */
+    public static String script(int chars, long seed) {
+        return new Corpus(seed).generate(chars);
+    }
+
+    private String generate(int chars) {
+        sb.append(FUNCTION);
+        while (sb.length() < chars) {
+            if (variables > 0 && random.nextInt(8) == 0) {
+                sb.append("f(");
+                operand(0);
+                sb.append(", ");
+                operand(0);
+                sb.append(')');
+            } else {
+                variable(variables);
+                sb.append(" = ");
+                expression(3);
+                variables++;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // XL identifiers are letters only, so variable n is written in base 26: va, vb, ..., vba, ...
+    private void variable(int n) {
+        sb.append('v');
+        int start = sb.length();
+        do {
+            sb.insert(start, (char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+    }
+
+    private void expression(int depth) {
+        term(depth);
+        for (int i = random.nextInt(3); i > 0; i--) {
+            sb.append(random.nextBoolean() ? " + " : " - ");
+            term(depth);
+        }
+    }
+
+    private void term(int depth) {
+        operand(depth);
+        if (random.nextInt(3) == 0) {
+            sb.append(" * ");
+            operand(depth);
+        } else if (random.nextInt(5) == 0) {
+            sb.append(" / ").append(1 + random.nextInt(9));
+        }
+    }
+
+    private void operand(int depth) {
+        int choice = random.nextInt(depth > 0 ? 5 : 3);
+        if (choice == 0 || variables == 0) {
+            sb.append(random.nextInt(1000));
+        } else if (choice < 3) {
+            variable(random.nextInt(variables));
+        } else {
+            sb.append('(');
+            expression(depth - 1);
+            sb.append(')');
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.byteworks.xl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.interpreter.Program;
+import org.byteworks.xl.interpreter.XLInterpreter;
+import org.byteworks.xl.parser.XLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each interpreter engine running the benchmark corpus, whose statements each run once, and a script that calls one
+ * function with an arithmetic body many times; the program benchmarks run them compiled to bytecode beforehand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EngineBenchmark {
+    private static final int CORPUS_SIZE = 1024 * 1024;
+    private static final int CALLS = 100_000;
+
+    private static final PrintStream NOWHERE = new PrintStream(OutputStream.nullOutputStream());
+
+    @Param({ "TREE", "CLOSURE", "SPECIALIZING", "BYTECODE" })
+    public XLInterpreter.Engine engine;
+
+    // only functions declared by the TREE engine are compiled to JVM classes
+    @Param({ "INTERPRETED", "ADAPTIVE", "COMPILED" })
+    public XLInterpreter.Tier tier;
+
+    private List<Node> arithmetic;
+    private List<Node> calls;
+    private Program arithmeticProgram;
+    private Program callsProgram;
+
+    @Setup
+    public void setUp() {
+        arithmetic = XLParser.createParser(new Lexer(Corpus.script(CORPUS_SIZE, 42)), null).parse();
+        StringBuilder sb = new StringBuilder("f = fn a:Number b:Number -> Number { a * b + 3 - a / 2 + b * b - 1 }");
+        for (int i = 0; i < CALLS; i++) {
+            sb.append("\nf(").append(i).append(", 7)");
+        }
+        calls = XLParser.createParser(new Lexer(sb.toString()), null).parse();
+        arithmeticProgram = Program.compile(arithmetic);
+        callsProgram = Program.compile(calls);
+    }
+
+    @Benchmark
+    public void arithmetic() {
+        new XLInterpreter(engine, tier).exec(arithmetic, NOWHERE);
+    }
+
+    @Benchmark
+    public void calls() {
+        new XLInterpreter(engine, tier).exec(calls, NOWHERE);
+    }
+
+    @Benchmark
+    public void arithmeticProgram() {
+        new XLInterpreter(engine, tier).exec(arithmeticProgram, NOWHERE);
+    }
+
+    @Benchmark
+    public void callsProgram() {
+        new XLInterpreter(engine, tier).exec(callsProgram, NOWHERE);
+    }
+}
@@ -0,0 +1,66 @@
+package org.byteworks.xl.interpreter;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.xl.parser.XLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What a call to a function with an arithmetic body allocates on each engine; run it with ./gradlew jmh
+ * -Pjmh='AllocationBenchmark -prof gc' and read gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AllocationBenchmark {
+    private static final String FUNCTIONS = "small = fn x:Number y:Number -> Number { (x * y + 3 - x / 2 + y * y - 1) / 100 }\n"
+            + "large = fn x:Number y:Number -> Number { x * y + 3 - x / 2 + y * y - 1 }";
+
+    @Param({ "TREE", "CLOSURE", "SPECIALIZING", "BYTECODE" })
+    public XLInterpreter.Engine engine;
+
+    private Interpreter interpreter;
+    private Function small;
+    private Function large;
+    private List<Value> arguments;
+
+    @Setup
+    public void setUp() {
+        // functions compiled to JVM classes return their intermediate results as values, like the closures do
+        XLInterpreter xl = new XLInterpreter(engine, XLInterpreter.Tier.INTERPRETED);
+        xl.exec(XLParser.createParser(new Lexer(FUNCTIONS), null).parse(), new PrintStream(OutputStream.nullOutputStream()));
+        interpreter = xl.interpreter;
+        Type number = interpreter.getType(XLInterpreter.TYPE_NUMBER);
+        TypeList twoNumbers = new TypeList(List.of(number, number));
+        small = interpreter.getFunction("small", twoNumbers);
+        large = interpreter.getFunction("large", twoNumbers);
+        arguments = List.of(xl.number(7), xl.number(1000));
+    }
+
+    @Benchmark
+    public long smallResult() {
+        return interpreter.callFunction(small, arguments).longValue();
+    }
+
+    @Benchmark
+    public long largeResult() {
+        return interpreter.callFunction(large, arguments).longValue();
+    }
+}
@@ -0,0 +1,63 @@
+package org.byteworks.xl.parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.xl.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup cost of 10 MB of generated XL: lexing and parsing the mapped source into a FlatAst, against checksumming the
+ * source and reading the tree back from its .xlc file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CompiledAstBenchmark {
+    private static final int CORPUS_SIZE = 10 * 1024 * 1024;
+
+    private Path directory;
+    private Path source;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("xlc");
+        source = directory.resolve("corpus.xl");
+        Files.writeString(source, Corpus.script(CORPUS_SIZE, 42), StandardCharsets.UTF_8);
+        CompiledAst.load(source, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(CompiledAst.compiledPath(source));
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public FlatAst parse() throws IOException {
+        return XLParser.createParser(Lexer.map(source), null).parseFlat();
+    }
+
+    @Benchmark
+    public FlatAst load() throws IOException {
+        return CompiledAst.load(source, null);
+    }
+}
@@ -0,0 +1,62 @@
+package org.byteworks.xl.parser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The latency of a one-character edit in the middle of scripts of increasing size, kept parsed by an IncrementalParser,
+ * against parsing the whole script again. Each invocation types a digit over a digit and then puts the old one back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IncrementalParserBenchmark {
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    private String script;
+    private IncrementalParser parser;
+    private int digit;
+    private String original;
+
+    @Setup
+    public void setUp() {
+        script = Corpus.script(size, 42);
+        parser = new IncrementalParser(script, null);
+        digit = script.length() / 2;
+        while (!Character.isDigit(script.charAt(digit))) {
+            digit++;
+        }
+        original = script.substring(digit, digit + 1);
+    }
+
+    @Benchmark
+    public int edit() {
+        parser.edit(digit, digit + 1, "7");
+        parser.edit(digit, digit + 1, original);
+        return parser.getReparsed();
+    }
+
+    @Benchmark
+    public List<Node> reparse() {
+        return XLParser.createParser(new Lexer(script), null).parse();
+    }
+}
@@ -0,0 +1,62 @@
+package org.byteworks.xl.parser;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexes and parses 10 MB of generated XL with a ParallelParser on pools of increasing size. A pool of one thread still
+ * splits the script, so compare it against serial for the cost of splitting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParallelParserBenchmark {
+    private static final int CORPUS_SIZE = 10 * 1024 * 1024;
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threads;
+
+    private String corpus;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        corpus = Corpus.script(CORPUS_SIZE, 42);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Node> serial() {
+        return XLParser.createParser(new Lexer(corpus), null).parse();
+    }
+
+    @Benchmark
+    public List<Node> parallel() {
+        return new ParallelParser(pool, null).parse(corpus);
+    }
+}
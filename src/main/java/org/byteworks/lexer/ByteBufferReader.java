@@ -0,0 +1,75 @@
+package org.byteworks.lexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads UTF-8 straight out of a byte buffer (typically a memory-mapped file) into the caller's char array. ASCII bytes
+ * are copied across directly; only runs of non-ASCII bytes go through a CharsetDecoder.
+ */
+class ByteBufferReader extends Reader {
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    // second half of a surrogate pair that did not fit into the caller's array
+    private final CharBuffer pending = CharBuffer.allocate(2);
+
+    ByteBufferReader(final ByteBuffer bytes) {
+        this.bytes = bytes;
+        pending.flip();
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len && pending.hasRemaining()) {
+            cbuf[off + n++] = pending.get();
+        }
+        final ByteBuffer bytes = this.bytes;
+        while (n < len && bytes.hasRemaining()) {
+            byte b = bytes.get(bytes.position());
+            if (b >= 0) {
+                bytes.position(bytes.position() + 1);
+                cbuf[off + n++] = (char) b;
+            } else {
+                n += decode(cbuf, off + n, len - n);
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    private int decode(final char[] cbuf, final int off, final int len) throws IOException {
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        CoderResult result = decoder.decode(bytes, out, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        int decoded = out.position() - off;
+        if (decoded == 0 && result.isOverflow()) {
+            // a surrogate pair needs two chars but there is only room for one
+            pending.clear();
+            result = decoder.decode(bytes, pending, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            pending.flip();
+            cbuf[off] = pending.get();
+            decoded = 1;
+        }
+        return decoded;
+    }
+
+    @Override
+    public void close() {
+    }
+}
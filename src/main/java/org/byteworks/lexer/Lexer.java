@@ -1,14 +1,92 @@
 package org.byteworks.lexer;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-public class Lexer {
+public class Lexer implements TokenSource {
+    private static final int DEFAULT_LOOKAHEAD = 4;
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // the whole input when it was given as a String; null when lexing a stream
     private final String input;
+    private final Reader reader;
+    private boolean exhausted;
+
+    // window onto the input; buffer[0] is at offset bufferOffset in the input
+    private char[] buffer;
+    private int limit;
+    private long bufferOffset;
     private int pos;
+    // buffer index of the first character of the token most recently scanned
+    private int tokenStart;
+
+    // ring buffer of tokens that have been scanned but not yet consumed by next()
+    private final Token[] lookahead;
+    private int head;
+    private int buffered;
+    private int scanCount;
+
+    public Lexer(String input) { this(input, DEFAULT_LOOKAHEAD); }
+
+    public Lexer(String input, int lookahead) {
+        this(input, new StringReader(input), lookahead, Math.min(Math.max(input.length(), 1), DEFAULT_BUFFER_SIZE));
+    }
 
-    public Lexer(String input) { this.input = input; }
+    /**
+     * Lex a stream of characters through a fixed-size buffer, so memory use does not depend on the size of the input.
+     * The lexer does not close the reader.
+     */
+    public Lexer(Reader reader) { this(reader, DEFAULT_BUFFER_SIZE); }
+
+    public Lexer(Reader reader, int bufferSize) { this(null, reader, DEFAULT_LOOKAHEAD, bufferSize); }
+
+    public Lexer(ReadableByteChannel channel, Charset charset) {
+        this(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    /**
+     * Lex UTF-8 encoded bytes in place; ASCII is read byte by byte without going through a decoder.
+     */
+    public Lexer(ByteBuffer utf8) { this(new ByteBufferReader(utf8)); }
+
+    /**
+     * Lex a UTF-8 file through a read-only memory mapping. Files larger than 2 GB cannot be mapped; stream those with
+     * {@link #Lexer(Reader)}.
+     */
+    public static Lexer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Cannot map " + path + " (" + size + " bytes) in one piece; stream it instead");
+            }
+            return new Lexer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private Lexer(String input, Reader reader, int lookahead, int bufferSize) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lexer lookahead must be at least 1 (got " + lookahead + ")");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Lexer buffer size must be at least 1 (got " + bufferSize + ")");
+        }
+        this.input = input;
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.lookahead = new Token[lookahead];
+    }
 
     private static class Tokens {
         final static Eof EOF = new Eof();
@@ -28,14 +106,75 @@ public class Lexer {
         final static Operator RBRACE = new Operator("}", TokenType.RBRACE);
         final static Operator COLON = new Operator(":", TokenType.COLON);
         final static Keyword FUNCTION_DEFINITION = new Keyword("fn", TokenType.FUNCTION_DEFINITION);
+
+        // shared token instances indexed by TokenType.ordinal(); null for types whose characters vary
+        private final static Token[] BY_TYPE = new Token[TokenType.values().length];
+        static {
+            for (Token token : List.of(EOF, EOL, PLUS, PLUSPLUS, MINUS, MINUSMINUS, MULTIPLY, DIVIDE, LPAREN, RPAREN, ASSIGNMENT, COMMA, ARROW,
+                    LBRACE, RBRACE, COLON, FUNCTION_DEFINITION)) {
+                BY_TYPE[token.getType().ordinal()] = token;
+            }
+        }
+    }
+
+    /**
+     * Build a token of the given type; operators, keywords and EOF/EOL are shared instances.
+     */
+    static Token token(TokenType type, CharSequence input, int start, int end) {
+        Token token = Tokens.BY_TYPE[type.ordinal()];
+        if (token != null) {
+            return token;
+        }
+        return token(type, input.subSequence(start, end).toString());
     }
 
-    static class Number extends Token {
-        Number(String chars) { super(chars, TokenType.NUMBER); }
+    private static Token token(TokenType type, String chars) {
+        switch (type) {
+            case NUMBER:
+                return new Number(chars);
+            case IDENTIFIER:
+                return new Identifier(Symbol.intern(chars));
+            default:
+                return new Unknown(chars);
+        }
     }
 
-    static class Identifier extends Token {
-        Identifier(String chars) { super(chars, TokenType.IDENTIFIER); }
+    public static class Number extends Token {
+        private final long value;
+        private final boolean inRange;
+
+        Number(String chars) {
+            super(chars, TokenType.NUMBER);
+            long value = 0;
+            boolean inRange = true;
+            try {
+                value = Long.parseLong(chars);
+            } catch (NumberFormatException e) {
+                inRange = false;
+            }
+            this.value = value;
+            this.inRange = inRange;
+        }
+
+        public long getValue() {
+            if (!inRange) {
+                throw new IllegalStateException("Number literal " + getChars() + " does not fit in a 64-bit integer");
+            }
+            return value;
+        }
+    }
+
+    public static class Identifier extends Token {
+        private final Symbol symbol;
+
+        Identifier(Symbol symbol) {
+            super(symbol.name(), TokenType.IDENTIFIER);
+            this.symbol = symbol;
+        }
+
+        public Symbol getSymbol() {
+            return symbol;
+        }
     }
 
     static class Keyword extends Token {
@@ -60,89 +199,252 @@ public class Lexer {
         Unknown(String chars) { super(chars, TokenType.UNKNOWN); }
     }
 
-    private boolean isIdentifierOrSymbolCharacter(char ch) {
-        return Character.isAlphabetic(ch) || '_' == ch;
+    // character classes; ASCII characters are looked up in CHAR_CLASSES, anything else goes through Character
+    private static final byte C_OTHER = 0;
+    private static final byte C_WHITESPACE = 1;
+    private static final byte C_NEWLINE = 2;
+    private static final byte C_DIGIT = 3;
+    private static final byte C_IDENTIFIER = 4;
+    private static final byte C_OPERATOR = 5;
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+    private static final TokenType[] OPERATORS = new TokenType[128];
+    static {
+        OPERATORS['+'] = TokenType.PLUS;
+        OPERATORS['-'] = TokenType.MINUS;
+        OPERATORS['*'] = TokenType.MULTIPLY;
+        OPERATORS['/'] = TokenType.DIVIDE;
+        OPERATORS['('] = TokenType.LPAREN;
+        OPERATORS[')'] = TokenType.RPAREN;
+        OPERATORS['='] = TokenType.ASSIGNMENT;
+        OPERATORS[','] = TokenType.COMMA;
+        OPERATORS['{'] = TokenType.LBRACE;
+        OPERATORS['}'] = TokenType.RBRACE;
+        OPERATORS[':'] = TokenType.COLON;
+        for (char ch = 0; ch < CHAR_CLASSES.length; ch++) {
+            CHAR_CLASSES[ch] = unicodeClassOf(ch);
+        }
+    }
+
+    private static byte unicodeClassOf(char ch) {
+        if (ch == '\n') {
+            return C_NEWLINE;
+        } else if (Character.isWhitespace(ch)) {
+            return C_WHITESPACE;
+        } else if (Character.isDigit(ch)) {
+            return C_DIGIT;
+        } else if (Character.isAlphabetic(ch) || '_' == ch) {
+            return C_IDENTIFIER;
+        } else if (ch < OPERATORS.length && OPERATORS[ch] != null) {
+            return C_OPERATOR;
+        }
+        return C_OTHER;
+    }
+
+    private static int classOf(char ch) {
+        return ch < CHAR_CLASSES.length ? CHAR_CLASSES[ch] : unicodeClassOf(ch);
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch < CHAR_CLASSES.length ? CHAR_CLASSES[ch] == C_DIGIT : Character.isDigit(ch);
     }
 
+    private static boolean isIdentifierOrSymbolCharacter(char ch) {
+        return ch < CHAR_CLASSES.length ? CHAR_CLASSES[ch] == C_IDENTIFIER : Character.isAlphabetic(ch) || '_' == ch;
+    }
+
+    @Override
     public boolean hasMoreTokens() {
         return !(peek() == Tokens.EOF);
     }
 
+    @Override
     public Token next() {
-        if (!available()) {
-            return Tokens.EOF;
+        if (buffered == 0) {
+            return scan();
         }
-        char ch = read_ch();
-        while (Character.isWhitespace(ch) && available()) {
-            if (ch == '\n') {
-                return Tokens.EOL;
-            }
-            ch = read_ch();
+        Token token = lookahead[head];
+        lookahead[head] = null;
+        head = (head + 1) % lookahead.length;
+        buffered--;
+        return token;
+    }
+
+    @Override
+    public Token peek() {
+        return peek(0);
+    }
+
+    /**
+     * Look ahead <code>offset</code> tokens past the next token without consuming anything.
+     */
+    public Token peek(int offset) {
+        if (offset < 0 || offset >= lookahead.length) {
+            throw new IllegalArgumentException("Lookahead offset " + offset + " is outside of the lookahead buffer (size " + lookahead.length + ")");
         }
-        if (Character.isWhitespace(ch) && !available()) {
-            return Tokens.EOF;
+        while (buffered <= offset) {
+            lookahead[(head + buffered) % lookahead.length] = scan();
+            buffered++;
         }
-        if (Character.isDigit(ch)) {
-            StringBuilder sb = new StringBuilder().append(ch);
-            while (available() && Character.isDigit(ch = peek_ch())) {
-                sb.append(ch);
-                pos++;
-            }
-            return new Number(sb.toString());
-        } else if (isIdentifierOrSymbolCharacter(ch)) {
-            StringBuilder sb = new StringBuilder().append(ch);
-            while (available() && isIdentifierOrSymbolCharacter(ch = peek_ch())) {
-                sb.append(ch);
-                pos++;
+        return lookahead[(head + offset) % lookahead.length];
+    }
+
+    /**
+     * The number of tokens scanned so far, including any still in the lookahead buffer.
+     */
+    public int getScanCount() {
+        return scanCount;
+    }
+
+    /**
+     * Drain the remaining input into a columnar {@link TokenStream} without creating token objects.
+     */
+    public TokenStream tokenize() {
+        if (input == null) {
+            throw new IllegalStateException("Only a lexer over a String can be tokenized; a TokenStream refers back to its source");
+        }
+        if (buffered != 0) {
+            throw new IllegalStateException("Cannot tokenize a lexer with " + buffered + " token(s) in its lookahead buffer");
+        }
+        TokenStream.Builder builder = new TokenStream.Builder(input);
+        TokenType type;
+        do {
+            type = scanType();
+            builder.add(type, (int) (bufferOffset + tokenStart), (int) (bufferOffset + pos));
+        } while (type != TokenType.EOF);
+        return builder.build();
+    }
+
+    private Token scan() {
+        TokenType type = scanType();
+        Token token = Tokens.BY_TYPE[type.ordinal()];
+        if (token != null) {
+            return token;
+        } else if (type == TokenType.IDENTIFIER) {
+            return new Identifier(Symbol.intern(buffer, tokenStart, pos - tokenStart));
+        }
+        return token(type, new String(buffer, tokenStart, pos - tokenStart));
+    }
+
+    /**
+     * Scan the next token, leaving its characters in the buffer between tokenStart and pos.
+     */
+    private TokenType scanType() {
+        scanCount++;
+        char ch;
+        int cls;
+        do {
+            if (pos == limit) {
+                tokenStart = pos;
+                if (!fill()) {
+                    return TokenType.EOF;
+                }
             }
-            String tokenString = sb.toString();
-            if (Tokens.FUNCTION_DEFINITION.getChars().equals(tokenString)) {
-                return Tokens.FUNCTION_DEFINITION;
+            ch = buffer[pos++];
+            cls = classOf(ch);
+            if (cls == C_NEWLINE) {
+                // a newline ends the line unless it is the last character of the input
+                tokenStart = pos - 1;
+                if (pos < limit || fill()) {
+                    return TokenType.EOL;
+                }
+                tokenStart = pos;
+                return TokenType.EOF;
             }
-            return new Identifier(tokenString);
+        } while (cls == C_WHITESPACE);
+        tokenStart = pos - 1;
+        switch (cls) {
+            case C_DIGIT:
+                do {
+                    pos = skipDigits(pos);
+                } while (pos == limit && fill());
+                return TokenType.NUMBER;
+            case C_IDENTIFIER:
+                do {
+                    pos = skipIdentifier(pos);
+                } while (pos == limit && fill());
+                if (isKeyword(Tokens.FUNCTION_DEFINITION.getChars())) {
+                    return TokenType.FUNCTION_DEFINITION;
+                }
+                return TokenType.IDENTIFIER;
+            case C_OPERATOR:
+                TokenType type = OPERATORS[ch];
+                if (type == TokenType.PLUS && consumeIf('+')) {
+                    return TokenType.PLUSPLUS;
+                } else if (type == TokenType.MINUS) {
+                    if (consumeIf('-')) {
+                        return TokenType.MINUSMINUS;
+                    } else if (consumeIf('>')) {
+                        return TokenType.ARROW;
+                    }
+                }
+                return type;
+            default:
+                return TokenType.UNKNOWN;
         }
-        else if (ch == '+') {
-            if (peek_ch() == '+') {
-                read_ch();
-                return Tokens.PLUSPLUS;
-            }
-            return Tokens.PLUS;
-        } else if (ch == '-') {
-            if (consumeIf('-')) {
-                return Tokens.MINUSMINUS;
-            } else if (consumeIf('>')) {
-                return Tokens.ARROW;
+    }
+
+    private int skipDigits(int p) {
+        final char[] buffer = this.buffer;
+        final int limit = this.limit;
+        while (p < limit && isDigit(buffer[p])) {
+            p++;
+        }
+        return p;
+    }
+
+    private int skipIdentifier(int p) {
+        final char[] buffer = this.buffer;
+        final int limit = this.limit;
+        while (p < limit && isIdentifierOrSymbolCharacter(buffer[p])) {
+            p++;
+        }
+        return p;
+    }
+
+    private boolean isKeyword(String keyword) {
+        if (pos - tokenStart != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (buffer[tokenStart + i] != keyword.charAt(i)) {
+                return false;
             }
-            return Tokens.MINUS;
-        } else if (ch == '*') {
-            return Tokens.MULTIPLY;
-        } else if (ch == '/') {
-            return Tokens.DIVIDE;
-        } else if (ch == '(') {
-            return Tokens.LPAREN;
-        } else if (ch == ')') {
-            return Tokens.RPAREN;
-        } else if (ch == '=') {
-            return Tokens.ASSIGNMENT;
-        } else if (ch == ',') {
-            return Tokens.COMMA;
-        } else if (ch == '{') {
-            return Tokens.LBRACE;
-        } else if (ch == '}') {
-            return Tokens.RBRACE;
-        } else if (ch == ':') {
-            return Tokens.COLON;
-        }
-        return new Unknown(String.valueOf(ch));
+        }
+        return true;
     }
 
-    public Token peek() {
-        int savePos = pos;
-        Token token = next();
-        pos = savePos;
-        return token;
+    /**
+     * Read more input into the buffer, keeping the token being scanned in it.
+     */
+    private boolean fill() {
+        if (exhausted) {
+            return false;
+        }
+        if (tokenStart > 0) {
+            System.arraycopy(buffer, tokenStart, buffer, 0, limit - tokenStart);
+            limit -= tokenStart;
+            pos -= tokenStart;
+            bufferOffset += tokenStart;
+            tokenStart = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                exhausted = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read lexer input", e);
+        }
     }
 
+    @Override
     public boolean peekIs(TokenType... tokenTypes) {
         Token token = peek();
         for (TokenType tokenType : tokenTypes) {
@@ -153,6 +455,7 @@ public class Lexer {
         return false;
     }
 
+    @Override
     public boolean consumeIf(TokenType... tokenTypes) {
         if (peekIs(tokenTypes)) {
             next();
@@ -175,25 +478,12 @@ public class Lexer {
         }
     }
 
-    private char peek_ch() {
-        return input.charAt(pos);
-    }
-
     private boolean consumeIf(char tokenChar) {
-        char ch = peek_ch();
-        if (tokenChar == ch) {
-            read_ch();
+        if ((pos < limit || fill()) && tokenChar == buffer[pos]) {
+            pos++;
             return true;
         }
         return false;
     }
-
-    private char read_ch() {
-        return input.charAt(pos++);
-    }
-
-    private boolean available() {
-        return pos < input.length();
-    }
 }
 
@@ -0,0 +1,141 @@
+package org.byteworks.lexer;
+
+/**
+ * A canonical, interned identifier with a dense integer id, so symbols compare by identity and can index arrays.
+ */
+public final class Symbol {
+    private static final Object lock = new Object();
+    // open-addressed hash table; read without locking, written under lock and republished whenever it is resized
+    private static volatile Symbol[] table = new Symbol[1024];
+    private static int count;
+
+    private final String name;
+    private final int id;
+    private final int hash;
+
+    private Symbol(final String name, final int id, final int hash) {
+        this.name = name;
+        this.id = id;
+        this.hash = hash;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    /**
+     * The number of symbols interned so far; every id is less than this.
+     */
+    public static int count() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    public static Symbol intern(CharSequence chars) {
+        int hash = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        hash = spread(hash);
+        Symbol symbol = find(table, hash, chars);
+        if (symbol != null) {
+            return symbol;
+        }
+        synchronized (lock) {
+            symbol = find(table, hash, chars);
+            return symbol != null ? symbol : insert(chars.toString(), hash);
+        }
+    }
+
+    static Symbol intern(char[] chars, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        hash = spread(hash);
+        Symbol symbol = find(table, hash, chars, start, length);
+        if (symbol != null) {
+            return symbol;
+        }
+        synchronized (lock) {
+            symbol = find(table, hash, chars, start, length);
+            return symbol != null ? symbol : insert(new String(chars, start, length), hash);
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static Symbol find(Symbol[] table, int hash, CharSequence chars) {
+        int mask = table.length - 1;
+        for (int i = hash & mask; table[i] != null; i = (i + 1) & mask) {
+            Symbol symbol = table[i];
+            if (symbol.hash == hash && symbol.name.contentEquals(chars)) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    private static Symbol find(Symbol[] table, int hash, char[] chars, int start, int length) {
+        int mask = table.length - 1;
+        for (int i = hash & mask; table[i] != null; i = (i + 1) & mask) {
+            Symbol symbol = table[i];
+            if (symbol.hash == hash && matches(symbol.name, chars, start, length)) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String name, char[] chars, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // callers hold the lock
+    private static Symbol insert(String name, int hash) {
+        Symbol symbol = new Symbol(name, count++, hash);
+        Symbol[] current = table;
+        if (count * 2 > current.length) {
+            Symbol[] resized = new Symbol[current.length * 2];
+            for (Symbol existing : current) {
+                if (existing != null) {
+                    put(resized, existing);
+                }
+            }
+            put(resized, symbol);
+            table = resized;
+        } else {
+            put(current, symbol);
+        }
+        return symbol;
+    }
+
+    private static void put(Symbol[] table, Symbol symbol) {
+        int mask = table.length - 1;
+        int i = symbol.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = symbol;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,21 @@
+package org.byteworks.lexer;
+
+/**
+ * A forward-only supply of tokens with single-token lookahead. Implemented by {@link Lexer}, which scans as it goes, and
+ * by {@link TokenStream#cursor()}, which reads tokens that have already been scanned.
+ */
+public interface TokenSource {
+    Token next();
+
+    Token peek();
+
+    default TokenType peekType() {
+        return peek().getType();
+    }
+
+    boolean peekIs(TokenType... tokenTypes);
+
+    boolean consumeIf(TokenType... tokenTypes);
+
+    boolean hasMoreTokens();
+}
@@ -0,0 +1,152 @@
+package org.byteworks.lexer;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A fully lexed input held as columns of token types, offsets and lengths over the source, without an object per token.
+ * The last token is always EOF.
+ */
+public class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence input;
+    private final int[] types;
+    private final int[] starts;
+    private final int[] lengths;
+    private final int size;
+
+    private TokenStream(final CharSequence input, final int[] types, final int[] starts, final int[] lengths, final int size) {
+        this.input = input;
+        this.types = types;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.size = size;
+    }
+
+    public static TokenStream of(String input) {
+        return new Lexer(input).tokenize();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * The characters of a token as a read-only view over the source; nothing is copied.
+     */
+    public CharSequence chars(int index) {
+        return CharBuffer.wrap(input, starts[index], starts[index] + lengths[index]);
+    }
+
+    public Token token(int index) {
+        return Lexer.token(type(index), input, starts[index], starts[index] + lengths[index]);
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * A {@link TokenSource} over the stream, which builds a token object only when the parser takes it.
+     */
+    public class Cursor implements TokenSource {
+        private int index;
+
+        @Override
+        public Token next() {
+            Token token = token(index);
+            if (index < size - 1) {
+                index++;
+            }
+            return token;
+        }
+
+        @Override
+        public Token peek() {
+            return token(index);
+        }
+
+        @Override
+        public TokenType peekType() {
+            return type(index);
+        }
+
+        @Override
+        public boolean peekIs(final TokenType... tokenTypes) {
+            int ordinal = types[index];
+            for (TokenType tokenType : tokenTypes) {
+                if (tokenType.ordinal() == ordinal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean consumeIf(final TokenType... tokenTypes) {
+            if (peekIs(tokenTypes)) {
+                if (index < size - 1) {
+                    index++;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasMoreTokens() {
+            return types[index] != TokenType.EOF.ordinal();
+        }
+
+        public int position() {
+            return index;
+        }
+    }
+
+    static class Builder {
+        private final CharSequence input;
+        private int[] types;
+        private int[] starts;
+        private int[] lengths;
+        private int size;
+
+        Builder(final CharSequence input) {
+            this.input = input;
+            // a rough guess at token density; the columns grow if it is too low
+            int capacity = Math.max(16, input.length() / 3);
+            types = new int[capacity];
+            starts = new int[capacity];
+            lengths = new int[capacity];
+        }
+
+        void add(TokenType type, int start, int end) {
+            if (size == types.length) {
+                int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            types[size] = type.ordinal();
+            starts[size] = start;
+            lengths[size] = end - start;
+            size++;
+        }
+
+        TokenStream build() {
+            return new TokenStream(input, types, starts, lengths, size);
+        }
+    }
+}
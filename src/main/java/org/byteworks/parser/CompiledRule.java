@@ -0,0 +1,75 @@
+package org.byteworks.parser;
+
+import org.byteworks.parser.rule.Any;
+import org.byteworks.parser.rule.Compose;
+import org.byteworks.parser.rule.Convert;
+import org.byteworks.parser.rule.NodeParseRule;
+import org.byteworks.parser.rule.Require;
+import org.byteworks.parser.rule.RequireWithTerminator;
+import org.byteworks.parser.rule.Sequence;
+
+/**
+ * A rule tree resolved, when it is added to a {@link Grammar}, into the kinds of frame that {@link ParseStack} switches
+ * on. A Require is folded into its parent's frame, and a Compose or Convert whose parts are all applied directly is
+ * applied in one call.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+final class CompiledRule {
+    static final int APPLY = 0;
+    static final int ANY = 1;
+    static final int REQUIRE = 2;
+    static final int REQUIRE_WITH_TERMINATOR = 3;
+    static final int COMPOSE = 4;
+    static final int CONVERT = 5;
+    static final int SEQUENCE = 6;
+
+    final int kind;
+    final NodeParseRule rule;
+    final int precedence;
+    final CompiledRule first;
+    final CompiledRule second;
+    private final Class<? extends Node> type;
+
+    private CompiledRule(final int kind, final NodeParseRule rule, final CompiledRule first, final CompiledRule second, final Class<? extends Node> type) {
+        this.kind = kind;
+        this.rule = rule;
+        this.precedence = rule.precedence();
+        this.first = first;
+        this.second = second;
+        this.type = type == Node.class ? null : type;
+    }
+
+    static CompiledRule compile(final NodeParseRule<?, ?> rule) {
+        if (rule == null) {
+            return null;
+        }
+        Class<?> ruleClass = rule.getClass();
+        if (ruleClass == Any.class) {
+            return new CompiledRule(ANY, rule, null, null, null);
+        } else if (ruleClass == Require.class) {
+            return new CompiledRule(REQUIRE, rule, null, null, ((Require) rule).getType());
+        } else if (ruleClass == RequireWithTerminator.class) {
+            return new CompiledRule(REQUIRE_WITH_TERMINATOR, rule, compile(((RequireWithTerminator) rule).getRequire()), null, null);
+        } else if (ruleClass == Compose.class) {
+            CompiledRule left = compile(((Compose) rule).getLeft());
+            CompiledRule right = compile(((Compose) rule).getRight());
+            return new CompiledRule(left.kind == APPLY && right.kind == APPLY ? APPLY : COMPOSE, rule, left, right, null);
+        } else if (ruleClass == Convert.class) {
+            CompiledRule parseRule = compile(((Convert) rule).getParseRule());
+            return new CompiledRule(parseRule.kind == APPLY ? APPLY : CONVERT, rule, parseRule, null, null);
+        } else if (ruleClass == Sequence.class) {
+            return new CompiledRule(SEQUENCE, rule, compile(((Sequence) rule).getElementRule()), null, null);
+        }
+        return new CompiledRule(APPLY, rule, null, null, null);
+    }
+
+    /**
+     * Finish this rule with the node that its parse produced; only a Require has anything to do.
+     */
+    Object finish(final Object node) {
+        if (kind == REQUIRE && (type != null || node == null)) {
+            return ((Require) rule).require((Node) node);
+        }
+        return node;
+    }
+}
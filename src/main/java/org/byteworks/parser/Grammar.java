@@ -0,0 +1,74 @@
+package org.byteworks.parser;
+
+import java.util.Arrays;
+
+import org.byteworks.lexer.TokenType;
+import org.byteworks.parser.rule.NodeParseRule;
+
+/**
+ * An immutable set of prefix and infix parse rules, indexed by token type, that any number of parsers can share. Adding
+ * a rule compiles it into a {@link CompiledRule} and returns a new grammar.
+ */
+public class Grammar<T> {
+    private static final int TOKEN_TYPES = TokenType.values().length;
+    private static final Grammar<?> EMPTY = new Grammar<>(new NodeParseRule<?, ?>[TOKEN_TYPES], new NodeParseRule<?, ?>[TOKEN_TYPES],
+            new CompiledRule[TOKEN_TYPES], new CompiledRule[TOKEN_TYPES]);
+
+    private final NodeParseRule<?, ?>[] prefixRules;
+    private final NodeParseRule<?, ?>[] infixRules;
+    private final CompiledRule[] compiledPrefixRules;
+    private final CompiledRule[] compiledInfixRules;
+
+    private Grammar(final NodeParseRule<?, ?>[] prefixRules, final NodeParseRule<?, ?>[] infixRules, final CompiledRule[] compiledPrefixRules,
+            final CompiledRule[] compiledInfixRules) {
+        this.prefixRules = prefixRules;
+        this.infixRules = infixRules;
+        this.compiledPrefixRules = compiledPrefixRules;
+        this.compiledInfixRules = compiledInfixRules;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Grammar<T> empty() {
+        return (Grammar<T>) EMPTY;
+    }
+
+    public Grammar<T> withPrefixRule(TokenType tokenType, NodeParseRule<? extends T, ? extends T> rule) {
+        NodeParseRule<?, ?>[] rules = Arrays.copyOf(prefixRules, prefixRules.length);
+        rules[tokenType.ordinal()] = rule;
+        CompiledRule[] compiled = Arrays.copyOf(compiledPrefixRules, compiledPrefixRules.length);
+        compiled[tokenType.ordinal()] = CompiledRule.compile(rule);
+        return new Grammar<>(rules, infixRules, compiled, compiledInfixRules);
+    }
+
+    public Grammar<T> withInfixRule(TokenType tokenType, NodeParseRule<? extends T, ? extends T> rule) {
+        NodeParseRule<?, ?>[] rules = Arrays.copyOf(infixRules, infixRules.length);
+        rules[tokenType.ordinal()] = rule;
+        CompiledRule[] compiled = Arrays.copyOf(compiledInfixRules, compiledInfixRules.length);
+        compiled[tokenType.ordinal()] = CompiledRule.compile(rule);
+        return new Grammar<>(prefixRules, rules, compiledPrefixRules, compiled);
+    }
+
+    /**
+     * The prefix rule for a token type, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public NodeParseRule<T, T> prefixRule(TokenType tokenType) {
+        return (NodeParseRule<T, T>) prefixRules[tokenType.ordinal()];
+    }
+
+    /**
+     * The infix rule for a token type, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public NodeParseRule<T, T> infixRule(TokenType tokenType) {
+        return (NodeParseRule<T, T>) infixRules[tokenType.ordinal()];
+    }
+
+    CompiledRule compiledPrefixRule(TokenType tokenType) {
+        return compiledPrefixRules[tokenType.ordinal()];
+    }
+
+    CompiledRule compiledInfixRule(TokenType tokenType) {
+        return compiledInfixRules[tokenType.ordinal()];
+    }
+}
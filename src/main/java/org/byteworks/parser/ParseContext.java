@@ -2,19 +2,19 @@ package org.byteworks.parser;
 
 import java.io.PrintStream;
 
-import org.byteworks.lexer.Lexer;
 import org.byteworks.lexer.Token;
+import org.byteworks.lexer.TokenSource;
 import org.byteworks.parser.rule.NodeParseRule;
 
 public class ParseContext<T> {
     public final Parser<T> parser;
-    public final Lexer lexer;
+    public final TokenSource lexer;
     public final PrintStream debugStream;
 
     private T currentNode;
     private Token currentToken;
 
-    public ParseContext(Parser<T> parser, Lexer lexer, PrintStream debug) {
+    public ParseContext(Parser<T> parser, TokenSource lexer, PrintStream debug) {
         this.parser = parser;
         this.lexer = lexer;
         this.debugStream = debug;
@@ -28,6 +28,10 @@ public class ParseContext<T> {
         return currentNode;
     }
 
+    void setCurrentNode(final T node) {
+        currentNode = node;
+    }
+
     public Token currentToken() {
         return currentToken;
     }
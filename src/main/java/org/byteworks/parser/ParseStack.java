@@ -0,0 +1,217 @@
+package org.byteworks.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.byteworks.lexer.Token;
+import org.byteworks.lexer.TokenType;
+import org.byteworks.parser.rule.Compose;
+import org.byteworks.parser.rule.Convert;
+import org.byteworks.parser.rule.RequireWithTerminator;
+import org.byteworks.parser.rule.Sequence;
+
+import static org.byteworks.parser.CompiledRule.ANY;
+import static org.byteworks.parser.CompiledRule.APPLY;
+import static org.byteworks.parser.CompiledRule.COMPOSE;
+import static org.byteworks.parser.CompiledRule.CONVERT;
+import static org.byteworks.parser.CompiledRule.REQUIRE;
+import static org.byteworks.parser.CompiledRule.REQUIRE_WITH_TERMINATOR;
+import static org.byteworks.parser.CompiledRule.SEQUENCE;
+
+/**
+ * Runs the Pratt loop and the compiled rules (see {@link CompiledRule}) on an explicit stack of frames instead of the
+ * Java call stack, so the depth of nesting is bounded by the heap. A rule that calls {@link ParseContext#parse(int)}
+ * itself still nests on the Java stack.
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+final class ParseStack<T> {
+    private static final int PARSE = -1;
+
+    private final Parser<T> parser;
+    private final ParseContext<T> context;
+    private final ParseTracer tracer;
+
+    // one entry per frame; state 0 is a frame that has just been pushed, higher states are waiting for a child's result.
+    // A parse frame keeps the prefix or infix rule it is waiting for.
+    private int[] kinds = new int[64];
+    private int[] states = new int[64];
+    private int[] precedences = new int[64];
+    private CompiledRule[] rules = new CompiledRule[64];
+    private Object[] values = new Object[64];
+    private int depth;
+
+    // the node produced by the frame that was popped last
+    private Object result;
+
+    ParseStack(final Parser<T> parser, final ParseContext<T> context) {
+        this.parser = parser;
+        this.context = context;
+        this.tracer = ParseTracer.ENABLED ? new ParseTracer() : null;
+    }
+
+    ParseTracer getTracer() {
+        return tracer;
+    }
+
+    T parse(final int precedence) {
+        final int base = depth;
+        pushParse(precedence);
+        try {
+            while (depth > base) {
+                step(depth - 1);
+            }
+        } catch (RuntimeException | Error e) {
+            // leave the stack as it was, so the parser stays usable after an error
+            Arrays.fill(rules, base, depth, null);
+            Arrays.fill(values, base, depth, null);
+            depth = base;
+            throw e;
+        }
+        T node = (T) result;
+        result = null;
+        return node;
+    }
+
+    private void step(final int frame) {
+        final CompiledRule rule = rules[frame];
+        switch (kinds[frame]) {
+        case PARSE:
+            if (states[frame] == 0) {
+                Token token = context.nextToken();
+                CompiledRule prefixRule = parser.getGrammar().compiledPrefixRule(token.getType());
+                if (prefixRule == null) {
+                    throw new IllegalArgumentException("No prefix parser registered for token " + token);
+                }
+                states[frame] = 1;
+                rules[frame] = prefixRule;
+                push(prefixRule);
+            } else {
+                result = parser.parsed((T) rule.finish(result));
+                context.setCurrentNode((T) result);
+                if (parser.infixPrecedence(context.lexer.peekType()) >= precedences[frame]) {
+                    Token token = context.nextToken();
+                    CompiledRule infixRule = parser.getGrammar().compiledInfixRule(token.getType());
+                    rules[frame] = infixRule;
+                    push(infixRule);
+                } else {
+                    pop();
+                }
+            }
+            break;
+        case ANY:
+            if (states[frame] == 0) {
+                states[frame] = 1;
+                pushParse(rule.precedence);
+            } else {
+                pop();
+            }
+            break;
+        case REQUIRE_WITH_TERMINATOR:
+            if (states[frame] == 0) {
+                states[frame] = 1;
+                push(rule.first);
+            } else {
+                result = ((RequireWithTerminator) rule.rule).requireTerminator((ParseContext) context, rule.first.finish(result));
+                pop();
+            }
+            break;
+        case COMPOSE:
+            if (states[frame] == 0) {
+                states[frame] = 1;
+                push(rule.first);
+            } else if (states[frame] == 1) {
+                states[frame] = 2;
+                values[frame] = rule.first.finish(result);
+                push(rule.second);
+            } else {
+                result = ((Compose) rule.rule).compose(values[frame], rule.second.finish(result));
+                pop();
+            }
+            break;
+        case CONVERT:
+            if (states[frame] == 0) {
+                states[frame] = 1;
+                push(rule.first);
+            } else {
+                result = ((Convert) rule.rule).convert(rule.first.finish(result));
+                pop();
+            }
+            break;
+        case SEQUENCE:
+            if (states[frame] == 0) {
+                states[frame] = 1;
+                values[frame] = new ArrayList<>();
+            } else {
+                ((List) values[frame]).add(rule.first.finish(result));
+            }
+            if (((Sequence) rule.rule).isTerminated(context)) {
+                result = new NodeList<>((List) values[frame]);
+                pop();
+            } else {
+                push(rule.first);
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown parse frame kind " + kinds[frame]);
+        }
+    }
+
+    private void pushParse(final int precedence) {
+        int frame = pushFrame(PARSE, null);
+        precedences[frame] = precedence;
+    }
+
+    // the frame that pushes a rule calls finish() on the node it gets back, which is where a Require checks it
+    private void push(final CompiledRule rule) {
+        switch (rule.kind) {
+        case REQUIRE:
+            pushParse(rule.precedence);
+            break;
+        case APPLY:
+            if (ParseTracer.ENABLED) {
+                tracer.enter(depth, rule.rule, currentTokenType());
+                result = rule.rule.apply(context);
+                tracer.exit(depth);
+            } else {
+                result = rule.rule.apply(context);
+            }
+            break;
+        default:
+            pushFrame(rule.kind, rule);
+        }
+    }
+
+    private int pushFrame(final int kind, final CompiledRule rule) {
+        if (depth == kinds.length) {
+            int capacity = depth * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            states = Arrays.copyOf(states, capacity);
+            precedences = Arrays.copyOf(precedences, capacity);
+            rules = Arrays.copyOf(rules, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        int frame = depth++;
+        kinds[frame] = kind;
+        states[frame] = 0;
+        rules[frame] = rule;
+        if (ParseTracer.ENABLED && kind != PARSE) {
+            tracer.enter(frame, rule.rule, currentTokenType());
+        }
+        return frame;
+    }
+
+    private void pop() {
+        depth--;
+        if (ParseTracer.ENABLED && kinds[depth] != PARSE) {
+            tracer.exit(depth);
+        }
+        rules[depth] = null;
+        values[depth] = null;
+    }
+
+    private TokenType currentTokenType() {
+        Token token = context.currentToken();
+        return token == null ? null : token.getType();
+    }
+}
@@ -0,0 +1,156 @@
+package org.byteworks.parser;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.byteworks.lexer.TokenType;
+import org.byteworks.parser.rule.NodeParseRule;
+
+/**
+ * Records which rules a parser applies and how long they take, as a ring buffer of the latest events and totals per
+ * rule. Switched on for the JVM with the system property org.byteworks.parser.trace=true, and the buffer's size
+ * with org.byteworks.parser.trace.events; a tracer stays on its parser's thread.
+ */
+public final class ParseTracer {
+    public static final boolean ENABLED = Boolean.getBoolean("org.byteworks.parser.trace");
+    private static final int DEFAULT_CAPACITY = Integer.getInteger("org.byteworks.parser.trace.events", 4096);
+
+    private final NodeParseRule<?, ?>[] rules;
+    private final TokenType[] tokenTypes;
+    private final int[] depths;
+    private final long[] nanos;
+    private long events;
+
+    // the rule, token type and start time of each frame that is being traced, by depth
+    private NodeParseRule<?, ?>[] openRules = new NodeParseRule<?, ?>[64];
+    private TokenType[] openTokenTypes = new TokenType[64];
+    private long[] starts = new long[64];
+
+    private final Map<NodeParseRule<?, ?>, RuleStatistics> statistics = new IdentityHashMap<>();
+
+    /**
+     * The totals for one rule. Times include the rules nested in it.
+     */
+    public static final class RuleStatistics {
+        private final NodeParseRule<?, ?> rule;
+        private final TokenType tokenType;
+        private long count;
+        private long totalNanos;
+        private int maxDepth;
+
+        private RuleStatistics(final NodeParseRule<?, ?> rule, final TokenType tokenType) {
+            this.rule = rule;
+            this.tokenType = tokenType;
+        }
+
+        public NodeParseRule<?, ?> getRule() {
+            return rule;
+        }
+
+        /**
+         * The type of the token that was current the first time the rule was applied.
+         */
+        public TokenType getTokenType() {
+            return tokenType;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+    }
+
+    public ParseTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParseTracer(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Parse trace capacity must be positive (got " + capacity + ")");
+        }
+        this.rules = new NodeParseRule<?, ?>[capacity];
+        this.tokenTypes = new TokenType[capacity];
+        this.depths = new int[capacity];
+        this.nanos = new long[capacity];
+    }
+
+    void enter(final int depth, final NodeParseRule<?, ?> rule, final TokenType tokenType) {
+        if (depth >= starts.length) {
+            int capacity = Math.max(depth + 1, starts.length * 2);
+            openRules = Arrays.copyOf(openRules, capacity);
+            openTokenTypes = Arrays.copyOf(openTokenTypes, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+        }
+        openRules[depth] = rule;
+        openTokenTypes[depth] = tokenType;
+        starts[depth] = System.nanoTime();
+    }
+
+    void exit(final int depth) {
+        long elapsed = System.nanoTime() - starts[depth];
+        NodeParseRule<?, ?> rule = openRules[depth];
+        TokenType tokenType = openTokenTypes[depth];
+        openRules[depth] = null;
+        int slot = (int) (events++ % rules.length);
+        rules[slot] = rule;
+        tokenTypes[slot] = tokenType;
+        depths[slot] = depth;
+        nanos[slot] = elapsed;
+        RuleStatistics ruleStatistics = statistics.computeIfAbsent(rule, r -> new RuleStatistics(r, tokenType));
+        ruleStatistics.count++;
+        ruleStatistics.totalNanos += elapsed;
+        ruleStatistics.maxDepth = Math.max(ruleStatistics.maxDepth, depth);
+    }
+
+    /**
+     * The number of events recorded so far, including those that have since been overwritten in the ring buffer.
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * The totals for every rule applied so far, the most expensive first.
+     */
+    public List<RuleStatistics> getStatistics() {
+        List<RuleStatistics> sorted = new ArrayList<>(statistics.values());
+        sorted.sort(Comparator.comparingLong((RuleStatistics s) -> s.totalNanos).reversed());
+        return sorted;
+    }
+
+    public void report(PrintStream out) {
+        out.printf("%-24s %-20s %10s %12s %14s %9s%n", "rule", "token", "precedence", "calls", "total ns", "max depth");
+        for (RuleStatistics s : getStatistics()) {
+            out.printf("%-24s %-20s %10s %12d %14d %9d%n", s.rule.getClass().getSimpleName(), s.tokenType, precedence(s.rule), s.count, s.totalNanos,
+                    s.maxDepth);
+        }
+    }
+
+    /**
+     * Print the events still in the ring buffer, oldest first.
+     */
+    public void printEvents(PrintStream out) {
+        long first = Math.max(0, events - rules.length);
+        for (long event = first; event < events; event++) {
+            int slot = (int) (event % rules.length);
+            out.printf("%d %s %s %s depth=%d %dns%n", event, rules[slot].getClass().getSimpleName(), tokenTypes[slot], precedence(rules[slot]), depths[slot],
+                    nanos[slot]);
+        }
+    }
+
+    private static String precedence(NodeParseRule<?, ?> rule) {
+        return rule.precedence() == Integer.MAX_VALUE ? "-" : String.valueOf(rule.precedence());
+    }
+}
@@ -1,34 +1,43 @@
 package org.byteworks.parser;
 
 import org.byteworks.parser.rule.NodeParseRule;
-import org.byteworks.lexer.Lexer;
 import org.byteworks.lexer.Token;
+import org.byteworks.lexer.TokenSource;
 import org.byteworks.lexer.TokenType;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A single parse of one token source, which must stay on one thread. It runs on an explicit {@link ParseStack}, so
+ * deeply nested input does not overflow the Java stack.
+ */
 public class Parser<T> {
-    private final Lexer lexer;
+    private final TokenSource lexer;
     private final PrintStream debugStream;
-    private final ParseContext<T> parseContext;
+    private final ParseStack<T> parseStack;
+    private Grammar<T> grammar;
 
-    public static <T> T require(ParseContext<T> parseContext, int precedence, Class<T> clazz, String error) {
+    public static <T> T require(ParseContext<T> parseContext, int precedence, Class<? extends T> clazz, String error) {
         T node = parseContext.parse(precedence);
         return require(node, clazz, error);
     }
 
-    public static <T> T require(T node, Class<T> clazz, String error) {
-        if (!(clazz.isAssignableFrom(node.getClass()))) {
+    public static <T> T require(T node, Class<? extends T> clazz, String error) {
+        if (!(clazz.isInstance(node))) {
             throw new IllegalStateException(error + " (got " + node.getClass().getSimpleName() + "='" + node + "')");
         }
         return node;
     }
 
-    public static Token require(Lexer lexer, TokenType tokenType, String error) {
+    public static Token require(TokenSource lexer, TokenType tokenType, String error) {
         Token token = lexer.peek();
         if (!(token.getType() == tokenType)) {
             throw new IllegalStateException(error + "(got " + token + ")");
@@ -36,58 +45,90 @@ public class Parser<T> {
         return lexer.next();
     }
 
-    private final Map<TokenType, NodeParseRule<? extends T, ? extends T>> prefixParseRules = new HashMap<>();
-    private final Map<TokenType, NodeParseRule<? extends T, ? extends T>> infixParseRules = new HashMap<>();
+    public Parser(TokenSource lexer, PrintStream debugStream) {
+        this(Grammar.empty(), lexer, debugStream);
+    }
 
-    public Parser(Lexer lexer, PrintStream debugStream) {
+    public Parser(Grammar<T> grammar, TokenSource lexer, PrintStream debugStream) {
+        this.grammar = grammar;
         this.lexer = lexer;
         this.debugStream = debugStream;
-        this.parseContext = new ParseContext<>(this, lexer, debugStream);
+        this.parseStack = new ParseStack<>(this, new ParseContext<>(this, lexer, debugStream));
+    }
+
+    public Grammar<T> getGrammar() {
+        return grammar;
+    }
+
+    public TokenSource getLexer() {
+        return lexer;
+    }
+
+    /**
+     * The tracer recording this parser's rules, or null unless {@link ParseTracer#ENABLED} is set.
+     */
+    public ParseTracer getTracer() {
+        return parseStack.getTracer();
     }
 
     public void registerPrefixParserRule(TokenType tokenType, NodeParseRule<? extends T, ? extends T> rule) {
-        prefixParseRules.put(tokenType, rule);
+        grammar = grammar.withPrefixRule(tokenType, rule);
     }
 
     public void registerInfixParserRule(TokenType tokenType, NodeParseRule<? extends T, ? extends T> rule) {
-        infixParseRules.put(tokenType, rule);
+        grammar = grammar.withInfixRule(tokenType, rule);
     }
 
     public List<T> parse() {
         List<T> nodes = new ArrayList<>();
-        while(lexer.hasMoreTokens()) {
-            nodes.add(parse(0));
+        statements().forEachRemaining(nodes::add);
+        if (ParseTracer.ENABLED && debugStream != null) {
+            parseStack.getTracer().report(debugStream);
         }
         return nodes;
     }
 
-    public T parse(final int precedence) {
-        Token token = parseContext.nextToken();
-        T node = parseFirstNode(token);
-        while (shouldParseInfix(precedence)) {
-            token = parseContext.nextToken();
-            NodeParseRule<? extends T, ? extends T> rule = infixParseRules.get(token.getType());
-            node = parseContext.parseInfix((NodeParseRule<T, T>) rule);
-        }
-        return node;
+    /**
+     * The top-level statements of the input, each parsed only when the iterator is advanced to it.
+     */
+    public Iterator<T> statements() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return lexer.hasMoreTokens();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return parse(0);
+            }
+        };
     }
 
-    private boolean shouldParseInfix(int precedence) {
-        Token token = lexer.peek();
-        final int infixPrecedence = precedence(token);
-        return infixPrecedence >= precedence;
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(statements(), Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
-    private T parseFirstNode(Token token) {
-        NodeParseRule<? extends T, ? extends T> prefixParseRule = prefixParseRules.get(token.getType());
-        if (prefixParseRule != null) {
-            return parseContext.parsePrefix((NodeParseRule<T, T>) prefixParseRule);
-        }
-        throw new IllegalArgumentException("No prefix parser registered for token " + token);
+    public T parse(final int precedence) {
+        return parseStack.parse(precedence);
     }
 
-    private int precedence(Token token) {
-        NodeParseRule<? extends T, ? extends T> rule = infixParseRules.get(token.getType());
+    /**
+     * Called with each node that a prefix or infix rule produces, children before the nodes built from them; the node
+     * returned is used in its place. Returns the node unchanged unless overridden.
+     */
+    protected T parsed(T node) {
+        return node;
+    }
+
+    int infixPrecedence(TokenType tokenType) {
+        NodeParseRule<T, T> rule = grammar.infixRule(tokenType);
+        if (rule == null) {
+            throw new IllegalArgumentException("No infix parser registered for token type " + tokenType);
+        }
         return rule.precedence();
     }
 
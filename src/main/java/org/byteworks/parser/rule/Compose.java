@@ -20,6 +20,18 @@ public class Compose<T, U, V, R> extends NodeParseRule<T, R> {
         this(DEFAULT_PRECEDENCE(), left, right, composer);
     }
 
+    public NodeParseRule<T, U> getLeft() {
+        return left;
+    }
+
+    public NodeParseRule<T, V> getRight() {
+        return right;
+    }
+
+    public R compose(U leftNode, V rightNode) {
+        return composer.apply(leftNode, rightNode);
+    }
+
     @Override
     public R apply(final ParseContext<T> context) {
         U leftNode = left.apply(context);
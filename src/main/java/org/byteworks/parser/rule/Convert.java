@@ -18,6 +18,14 @@ public class Convert<T, U, R> extends NodeParseRule<T, R> {
         this(DEFAULT_PRECEDENCE(), parseRule, converter);
     }
 
+    public NodeParseRule<T, U> getParseRule() {
+        return parseRule;
+    }
+
+    public R convert(U node) {
+        return converter.apply(node);
+    }
+
     @Override
     public R apply(final ParseContext<T> context) {
         return converter.apply(parseRule.apply(context));
@@ -5,17 +5,30 @@ import org.byteworks.parser.ParseContext;
 import org.byteworks.parser.Parser;
 
 public class Require<T> extends NodeParseRule<Node, T> {
-    private final Class clazz;
+    private final Class<? extends Node> clazz;
     private final String error;
 
-    public Require(final int precedence, final Class clazz, final String error) {
+    public Require(final int precedence, final Class<? extends Node> clazz, final String error) {
         super(precedence);
         this.clazz = clazz;
         this.error = error;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public T apply(final ParseContext<Node> parseContext) {
         return (T) Parser.require(parseContext, precedence(), clazz, error);
     }
+
+    public Class<? extends Node> getType() {
+        return clazz;
+    }
+
+    /**
+     * Check a node that has already been parsed at this rule's precedence.
+     */
+    @SuppressWarnings("unchecked")
+    public T require(final Node node) {
+        return (T) Parser.require(node, clazz, error);
+    }
 }
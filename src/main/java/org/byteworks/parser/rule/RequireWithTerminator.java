@@ -9,7 +9,7 @@ public class RequireWithTerminator<T> extends NodeParseRule<Node, T> {
     private final TokenType terminator;
     private final Require<T> require;
 
-    public RequireWithTerminator(final int precedence, final Class clazz, final String error, TokenType terminator) {
+    public RequireWithTerminator(final int precedence, final Class<? extends Node> clazz, final String error, TokenType terminator) {
         super(precedence);
         this.require = new Require<T>(precedence, clazz, error);
         this.terminator = terminator;
@@ -18,6 +18,17 @@ public class RequireWithTerminator<T> extends NodeParseRule<Node, T> {
     @Override
     public T apply(final ParseContext<Node> parseContext) {
         T node = require.apply(parseContext);
+        return requireTerminator(parseContext, node);
+    }
+
+    public Require<T> getRequire() {
+        return require;
+    }
+
+    /**
+     * Consume the terminator that must follow a node which has already been parsed.
+     */
+    public T requireTerminator(final ParseContext<Node> parseContext, final T node) {
         Parser.require(parseContext.lexer, terminator, "Expected terminator " + terminator);
         return node;
     }
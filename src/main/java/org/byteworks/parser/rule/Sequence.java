@@ -16,6 +16,14 @@ public class Sequence<T, U> extends NodeParseRule<T, NodeList<U>> {
         this.terminationCondition = terminationCondition;
     }
 
+    public NodeParseRule<T, U> getElementRule() {
+        return elementRule;
+    }
+
+    public boolean isTerminated(final ParseContext<T> parseContext) {
+        return terminationCondition.test(parseContext);
+    }
+
     @Override
     public NodeList<U> apply(final ParseContext<T> parseContext) {
         List<U> nodes = new ArrayList<>();
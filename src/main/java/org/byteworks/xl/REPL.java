@@ -4,23 +4,36 @@ import org.byteworks.parser.Node;
 import org.byteworks.parser.Parser;
 import org.byteworks.xl.interpreter.XLInterpreter;
 import org.byteworks.lexer.Lexer;
+import org.byteworks.xl.parser.XLParser;
 
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class REPL {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         XLInterpreter interpreter = new XLInterpreter();
 
+        if (args.length > 0) {
+            for (String file : args) {
+                run(Lexer.map(Path.of(file)), interpreter);
+            }
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
         while(true) {
             String input = scanner.nextLine();
             if("quit".equalsIgnoreCase(input)) {
                 return;
             }
-            Parser<Node> parser = new Parser<>(new Lexer(input), System.out);
-            List<Node> nodes = parser.parse();
-            interpreter.exec(nodes, System.out);
+            run(new Lexer(input), interpreter);
         }
     }
+
+    // evaluate each top-level statement as soon as it is parsed, so a script is never held in memory as a whole
+    private static void run(Lexer lexer, XLInterpreter interpreter) {
+        Parser<Node> parser = XLParser.createParser(lexer, System.out);
+        interpreter.exec(parser.statements(), System.out);
+    }
 }
@@ -0,0 +1,234 @@
+package org.byteworks.xl.interpreter;
+
+import org.byteworks.lexer.Symbol;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.parser.node.ArgumentListNode;
+import org.byteworks.xl.parser.node.AssignmentNode;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.DivideNode;
+import org.byteworks.xl.parser.node.EmptyNode;
+import org.byteworks.xl.parser.node.ExpressionListNode;
+import org.byteworks.xl.parser.node.ExpressionNode;
+import org.byteworks.xl.parser.node.FunctionCallNode;
+import org.byteworks.xl.parser.node.FunctionDeclarationNode;
+import org.byteworks.xl.parser.node.FunctionSignatureNode;
+import org.byteworks.xl.parser.node.IdentifierNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.MinusNode;
+import org.byteworks.xl.parser.node.MultiplyNode;
+import org.byteworks.xl.parser.node.NegativeSignedNode;
+import org.byteworks.xl.parser.node.PlusNode;
+import org.byteworks.xl.parser.node.PositiveSignedNode;
+import org.byteworks.xl.parser.node.PostDecrementNode;
+import org.byteworks.xl.parser.node.PostIncrementNode;
+import org.byteworks.xl.parser.node.PreDecrementNode;
+import org.byteworks.xl.parser.node.PreIncrementNode;
+import org.byteworks.xl.parser.node.TypeExpressionNode;
+import org.byteworks.xl.parser.node.UnaryOpNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link Program} from statements, storing each constant, symbol and text once.
+ */
+final class BytecodeCompiler {
+    private int[] code = new int[64];
+    private int length;
+    private final List<Integer> statements = new ArrayList<>();
+    private long[] numbers = new long[8];
+    private int numberCount;
+    private final Map<Long, Integer> numberIndexes = new HashMap<>();
+    private final Map<Symbol, Integer> symbolIndexes = new HashMap<>();
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final Map<String, Integer> textIndexes = new HashMap<>();
+    private final List<String> texts = new ArrayList<>();
+    private int callSites;
+
+    void statement(final Node statement) {
+        if (statement instanceof ExpressionNode) {
+            statements.add(length);
+            expression((ExpressionNode) statement);
+            emit(Program.RETURN);
+        } else {
+            statements.add(~text(String.valueOf(statement)));
+        }
+    }
+
+    Program build() {
+        return new Program(Arrays.copyOf(code, length), statements.stream().mapToInt(Integer::intValue).toArray(), Arrays.copyOf(numbers, numberCount),
+                symbols.toArray(new Symbol[0]), texts.toArray(new String[0]), callSites);
+    }
+
+    private void expression(final ExpressionNode expression) {
+        if (expression instanceof LiteralNode) {
+            emit(Program.NUMBER, number(((LiteralNode) expression).getValue()));
+        } else if (expression instanceof IdentifierNode) {
+            emit(Program.LOAD, symbol(((IdentifierNode) expression).getSymbol()));
+        } else if (expression instanceof UnaryOpNode) {
+            unaryOperator((UnaryOpNode) expression);
+        } else if (expression instanceof BinaryOpNode) {
+            binaryOperator((BinaryOpNode) expression);
+        } else if (expression instanceof FunctionDeclarationNode) {
+            functionDeclaration((FunctionDeclarationNode) expression);
+        } else if (expression instanceof FunctionCallNode) {
+            functionCall((FunctionCallNode) expression);
+        } else if (expression instanceof ExpressionListNode) {
+            expressionList((ExpressionListNode) expression);
+        } else {
+            emit(Program.FAIL, text("Don't know how to evaluate expression " + expression));
+        }
+    }
+
+    private void expression(final Node node) {
+        if (node instanceof ExpressionNode) {
+            expression((ExpressionNode) node);
+        } else {
+            emit(Program.FAIL, text("Don't know how to evaluate expression " + node));
+        }
+    }
+
+    private void expressionList(final ExpressionListNode expressionList) {
+        List<ExpressionNode> expressions = expressionList.getList();
+        if (expressions.isEmpty()) {
+            emit(Program.NULL);
+        }
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                emit(Program.POP);
+            }
+            expression(expressions.get(i));
+        }
+    }
+
+    private void binaryOperator(final BinaryOpNode binaryOp) {
+        if (binaryOp instanceof AssignmentNode) {
+            if (!(binaryOp.getLhs() instanceof IdentifierNode)) {
+                emit(Program.FAIL, text("The left hand side of an assignment must be an identifier in expression " + binaryOp));
+                return;
+            }
+            expression(binaryOp.getRhs());
+            emit(Program.STORE, symbol(((IdentifierNode) binaryOp.getLhs()).getSymbol()));
+            return;
+        }
+        int opcode;
+        if (binaryOp instanceof PlusNode) {
+            opcode = Program.ADD;
+        } else if (binaryOp instanceof MinusNode) {
+            opcode = Program.SUBTRACT;
+        } else if (binaryOp instanceof MultiplyNode) {
+            opcode = Program.MULTIPLY;
+        } else if (binaryOp instanceof DivideNode) {
+            opcode = Program.DIVIDE;
+        } else {
+            emit(Program.FAIL, text("Don't know \nhow to evaluate binary operator " + binaryOp.getClass().getSimpleName() + " in expression " + binaryOp));
+            return;
+        }
+        expression(binaryOp.getLhs());
+        expression(binaryOp.getRhs());
+        emit(opcode);
+    }
+
+    private void unaryOperator(final UnaryOpNode unaryOp) {
+        int opcode;
+        if (unaryOp instanceof NegativeSignedNode) {
+            opcode = Program.NEGATE;
+        } else if (unaryOp instanceof PositiveSignedNode) {
+            opcode = Program.PLUS;
+        } else if (unaryOp instanceof PreIncrementNode) {
+            opcode = Program.PRE_INCREMENT;
+        } else if (unaryOp instanceof PreDecrementNode) {
+            opcode = Program.PRE_DECREMENT;
+        } else if (unaryOp instanceof PostIncrementNode) {
+            opcode = Program.POST_INCREMENT;
+        } else if (unaryOp instanceof PostDecrementNode) {
+            opcode = Program.POST_DECREMENT;
+        } else {
+            expression(unaryOp.getExpr());
+            emit(Program.FAIL, text("Unknown unary operator " + unaryOp + " in expression " + unaryOp));
+            return;
+        }
+        expression(unaryOp.getExpr());
+        if (opcode == Program.NEGATE || opcode == Program.PLUS) {
+            emit(opcode, text(unaryOp.toString()));
+        } else {
+            int variable = unaryOp.getExpr() instanceof IdentifierNode ? symbol(((IdentifierNode) unaryOp.getExpr()).getSymbol()) : -1;
+            emit(opcode, text(unaryOp.toString()), variable);
+        }
+    }
+
+    private void functionCall(final FunctionCallNode functionCall) {
+        Node arguments = functionCall.getArguments();
+        int count;
+        boolean list = arguments instanceof ArgumentListNode;
+        if (list) {
+            ArgumentListNode argumentList = (ArgumentListNode) arguments;
+            for (int i = 0; i < argumentList.size(); i++) {
+                expression(argumentList.get(i));
+            }
+            count = argumentList.size();
+        } else if (arguments instanceof EmptyNode) {
+            count = 0;
+        } else {
+            expression(arguments);
+            count = 1;
+        }
+        emit(Program.CALL, symbol(functionCall.getSymbol()), count, list ? 1 : 0);
+        emit(callSites++);
+    }
+
+    private void functionDeclaration(final FunctionDeclarationNode functionDeclaration) {
+        FunctionSignatureNode functionSignature = functionDeclaration.getFunctionSignature();
+        List<TypeExpressionNode> parameterTypes = functionSignature.getParameterTypes();
+        emit(Program.DECLARE, parameterTypes.size());
+        for (TypeExpressionNode parameterType : parameterTypes) {
+            emit(symbol(parameterType.getTarget().getSymbol()), text(parameterType.getTypeExpression().getChars()));
+        }
+        List<IdentifierNode> returnTypes = functionSignature.getReturnTypes();
+        emit(returnTypes.size());
+        for (IdentifierNode returnType : returnTypes) {
+            emit(text(returnType.getChars()));
+        }
+        int bodyLength = length;
+        emit(0);
+        int body = length;
+        expression(functionDeclaration.getBody());
+        emit(Program.RETURN);
+        code[bodyLength] = length - body;
+    }
+
+    private void emit(int... ints) {
+        if (length + ints.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + ints.length));
+        }
+        System.arraycopy(ints, 0, code, length, ints.length);
+        length += ints.length;
+    }
+
+    private int number(long value) {
+        return numberIndexes.computeIfAbsent(value, it -> {
+            if (numberCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numberCount * 2);
+            }
+            numbers[numberCount] = value;
+            return numberCount++;
+        });
+    }
+
+    private int symbol(Symbol symbol) {
+        return symbolIndexes.computeIfAbsent(symbol, it -> {
+            symbols.add(it);
+            return symbols.size() - 1;
+        });
+    }
+
+    private int text(String text) {
+        return textIndexes.computeIfAbsent(text, it -> {
+            texts.add(it);
+            return texts.size() - 1;
+        });
+    }
+}
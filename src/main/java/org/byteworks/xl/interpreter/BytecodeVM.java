@@ -0,0 +1,337 @@
+package org.byteworks.xl.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
+import static org.byteworks.xl.interpreter.XLInterpreter.TYPE_NUMBER;
+import static org.byteworks.xl.interpreter.XLInterpreter.UNARY_OPERAND_ERROR;
+
+/**
+ * Runs {@link Program}s for an XLInterpreter on an operand stack that holds numbers unboxed in a parallel long array,
+ * so arithmetic with the built-in operators allocates nothing. Anything else goes through the same functions and checks
+ * as the tree walker.
+ */
+final class BytecodeVM {
+    // stands for null on the stack, since a null reference there means a number
+    private static final Value NULL = new Value(null, null);
+
+    private final XLInterpreter xl;
+    private final Interpreter interpreter;
+    private final Operators operators;
+    private final Type number;
+
+    private long[] numbers = new long[64];
+    private Value[] references = new Value[64];
+    // the first free slot; only up to date while the dispatch loop is calling out
+    private int top;
+
+    /**
+     * A program as run by one interpreter; kept by the program, so that it goes when the program does.
+     */
+    static final class Linked {
+        private final BytecodeVM vm;
+        private final Interpreter.Binding[] bindings;
+        // made by the first call through each
+        private final CallSite[] callSites;
+
+        private Linked(final BytecodeVM vm, final Program program) {
+            this.vm = vm;
+            Interpreter interpreter = vm.interpreter;
+            this.bindings = new Interpreter.Binding[program.symbols.length];
+            for (int i = 0; i < bindings.length; i++) {
+                bindings[i] = interpreter.binding(program.symbols[i]);
+            }
+            this.callSites = new CallSite[program.callSites];
+        }
+    }
+
+    private class BytecodeFunction implements FunctionImplementation {
+        private final Program program;
+        private final Linked linked;
+        private final int entry;
+
+        BytecodeFunction(final Program program, final Linked linked, final int entry) {
+            this.program = program;
+            this.linked = linked;
+            this.entry = entry;
+        }
+
+        @Override
+        public Value invoke(final FunctionSignature signature, final Stack<Value> stack) {
+            xl.bindParameters(signature, stack);
+            return run(program, linked, entry);
+        }
+    }
+
+    BytecodeVM(final XLInterpreter xl) {
+        this.xl = xl;
+        this.interpreter = xl.interpreter;
+        this.operators = xl.operators;
+        this.number = interpreter.getType(TYPE_NUMBER);
+    }
+
+    /**
+     * The value of a statement of the program, which must be an expression.
+     */
+    Value execute(final Program program, final int statement) {
+        Linked linked = program.linked;
+        if (linked == null || linked.vm != this) {
+            linked = new Linked(this, program);
+            program.linked = linked;
+        }
+        return execute(program, linked, statement);
+    }
+
+    /**
+     * The value of a program's only statement, without keeping the linking of a program that is run once.
+     */
+    Value executeOnce(final Program program) {
+        return execute(program, new Linked(this, program), 0);
+    }
+
+    private Value execute(final Program program, final Linked linked, final int statement) {
+        // an error may have left values on the stack
+        Arrays.fill(references, 0, top, null);
+        top = 0;
+        return run(program, linked, program.statements[statement]);
+    }
+
+    private Value run(final Program program, final Linked linked, int pc) {
+        final int[] code = program.code;
+        final int base = top;
+        int sp = base;
+        while (true) {
+            switch (code[pc++]) {
+            case Program.NUMBER:
+                sp = pushNumber(sp, program.numbers[code[pc++]]);
+                break;
+            case Program.LOAD: {
+                int symbol = code[pc++];
+                Value value = linked.bindings[symbol].value;
+                if (value == null) {
+                    throw new IllegalStateException("Could not resolve variable " + program.symbols[symbol]);
+                }
+                sp = push(sp, value);
+                break;
+            }
+            case Program.STORE: {
+                int symbol = code[pc++];
+                Value value = value(sp - 1);
+                if (value.isFunction()) {
+                    top = sp;
+                    references[sp - 1] = xl.assign(program.symbols[symbol], value);
+                } else {
+                    linked.bindings[symbol].value = value;
+                }
+                break;
+            }
+            case Program.ADD:
+                sp--;
+                if (numbers(sp) && operators.builtIn(Operators.ADDITION)) {
+                    numbers[sp - 1] += numbers[sp];
+                } else {
+                    binaryOperator(Operators.ADDITION, sp);
+                }
+                break;
+            case Program.SUBTRACT:
+                sp--;
+                if (numbers(sp) && operators.builtIn(Operators.SUBTRACTION)) {
+                    numbers[sp - 1] -= numbers[sp];
+                } else {
+                    binaryOperator(Operators.SUBTRACTION, sp);
+                }
+                break;
+            case Program.MULTIPLY:
+                sp--;
+                if (numbers(sp) && operators.builtIn(Operators.MULTIPLICATION)) {
+                    numbers[sp - 1] *= numbers[sp];
+                } else {
+                    binaryOperator(Operators.MULTIPLICATION, sp);
+                }
+                break;
+            case Program.DIVIDE:
+                sp--;
+                if (numbers(sp) && operators.builtIn(Operators.DIVISION)) {
+                    numbers[sp - 1] /= numbers[sp];
+                } else {
+                    binaryOperator(Operators.DIVISION, sp);
+                }
+                break;
+            case Program.NEGATE: {
+                int text = code[pc++];
+                if (references[sp - 1] == null) {
+                    numbers[sp - 1] = -numbers[sp - 1];
+                } else {
+                    Value operand = numberOperand(sp - 1, program.texts[text]);
+                    pushNumber(sp - 1, -operand.longValue());
+                }
+                break;
+            }
+            case Program.PLUS: {
+                int text = code[pc++];
+                if (references[sp - 1] != null) {
+                    push(sp - 1, xl.positive(numberOperand(sp - 1, program.texts[text])));
+                }
+                break;
+            }
+            case Program.PRE_INCREMENT:
+            case Program.PRE_DECREMENT:
+            case Program.POST_INCREMENT:
+            case Program.POST_DECREMENT: {
+                int opcode = code[pc - 1];
+                int text = code[pc++];
+                int symbol = code[pc++];
+                int operator = operator(opcode);
+                if (references[sp - 1] == null && operators.builtIn(operator)) {
+                    long operand = numbers[sp - 1];
+                    long result = opcode == Program.PRE_INCREMENT || opcode == Program.POST_INCREMENT ? operand + 1 : operand - 1;
+                    if (symbol >= 0) {
+                        linked.bindings[symbol].value = xl.number(result);
+                    }
+                    if (opcode == Program.PRE_INCREMENT || opcode == Program.PRE_DECREMENT) {
+                        numbers[sp - 1] = result;
+                    }
+                } else {
+                    Value operand = numberOperand(sp - 1, program.texts[text]);
+                    Function function = operators.function(operator);
+                    top = sp - 1;
+                    Value result = interpreter.callFunction(function, List.of(operand));
+                    if (symbol >= 0) {
+                        linked.bindings[symbol].value = result;
+                    }
+                    // the function may have used the operand's slot
+                    push(sp - 1, opcode == Program.PRE_INCREMENT || opcode == Program.PRE_DECREMENT ? result : operand);
+                }
+                break;
+            }
+            case Program.CALL: {
+                int symbol = code[pc++];
+                int count = code[pc++];
+                boolean list = code[pc++] != 0;
+                int site = code[pc++];
+                Value[] arguments = new Value[count];
+                sp -= count;
+                for (int i = 0; i < count; i++) {
+                    arguments[i] = value(sp + i);
+                    references[sp + i] = null;
+                }
+                CallSite callSite = linked.callSites[site];
+                if (callSite == null) {
+                    callSite = new CallSite(interpreter, program.symbols[symbol], list);
+                    linked.callSites[site] = callSite;
+                }
+                Function function = callSite.target(arguments);
+                top = sp;
+                sp = push(sp, interpreter.callFunction(function, arguments));
+                break;
+            }
+            case Program.DECLARE: {
+                int count = code[pc++];
+                List<FunctionParameter> functionParameters = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    functionParameters.add(new FunctionParameter(program.symbols[code[pc]], interpreter.getType(program.texts[code[pc + 1]])));
+                    pc += 2;
+                }
+                count = code[pc++];
+                List<String> returnTypes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    returnTypes.add(program.texts[code[pc++]]);
+                }
+                int length = code[pc++];
+                sp = push(sp, xl.declareFunction(functionParameters, returnTypes, new BytecodeFunction(program, linked, pc)));
+                pc += length;
+                break;
+            }
+            case Program.POP:
+                references[--sp] = null;
+                break;
+            case Program.NULL:
+                sp = push(sp, null);
+                break;
+            case Program.FAIL:
+                throw new IllegalStateException(program.texts[code[pc]]);
+            case Program.RETURN: {
+                Value result = value(sp - 1);
+                Arrays.fill(references, base, sp, null);
+                top = base;
+                return result;
+            }
+            default:
+                throw new IllegalStateException("Unknown opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+
+    private boolean numbers(final int right) {
+        return references[right - 1] == null && references[right] == null;
+    }
+
+    // the operator an increment or decrement opcode stands for
+    private static int operator(final int opcode) {
+        switch (opcode) {
+        case Program.PRE_INCREMENT:
+            return Operators.PRE_INCREMENT;
+        case Program.PRE_DECREMENT:
+            return Operators.PRE_DECREMENT;
+        case Program.POST_INCREMENT:
+            return Operators.POST_INCREMENT;
+        default:
+            return Operators.POST_DECREMENT;
+        }
+    }
+
+    // replace the operands, in the slots before right and at right, with the result of calling the operator's function
+    private void binaryOperator(final int operator, final int right) {
+        Value left = value(right - 1);
+        Value rightValue = value(right);
+        references[right] = null;
+        Function function = operators.function(operator);
+        top = right - 1;
+        push(right - 1, interpreter.callFunction(function, List.of(rightValue, left)));
+    }
+
+    private Value numberOperand(final int slot, final String expression) {
+        Value value = value(slot);
+        if (!number.equals(value.getType())) {
+            throw new IllegalStateException(String.format(UNARY_OPERAND_ERROR + expression, number, value.getType()));
+        }
+        return value;
+    }
+
+    private Value value(final int slot) {
+        Value reference = references[slot];
+        if (reference == null) {
+            return xl.number(numbers[slot]);
+        }
+        return reference == NULL ? null : reference;
+    }
+
+    private int pushNumber(final int sp, final long value) {
+        if (sp == numbers.length) {
+            grow();
+        }
+        numbers[sp] = value;
+        references[sp] = null;
+        return sp + 1;
+    }
+
+    private int push(final int sp, final Value value) {
+        if (sp == numbers.length) {
+            grow();
+        }
+        if (value instanceof NumberValue && value.getType() == number) {
+            numbers[sp] = value.longValue();
+            references[sp] = null;
+        } else {
+            references[sp] = value == null ? NULL : value;
+        }
+        return sp + 1;
+    }
+
+    private void grow() {
+        numbers = Arrays.copyOf(numbers, numbers.length * 2);
+        references = Arrays.copyOf(references, references.length * 2);
+    }
+}
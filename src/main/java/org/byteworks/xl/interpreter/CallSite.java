@@ -0,0 +1,65 @@
+package org.byteworks.xl.interpreter;
+
+import java.util.Arrays;
+
+import org.byteworks.lexer.Symbol;
+
+/**
+ * A call of a named function, which keeps the function it last looked up until a function is registered or the
+ * arguments' types change.
+ */
+final class CallSite {
+    private final Interpreter interpreter;
+    private final Symbol name;
+    // whether the parameter type is a TypeList, even of one type, rather than Unit or the single argument's type
+    private final boolean list;
+    private Function function;
+    private Type[] argumentTypes;
+    private int version = -1;
+
+    CallSite(final Interpreter interpreter, final Symbol name, final boolean list) {
+        this.interpreter = interpreter;
+        this.name = name;
+        this.list = list;
+    }
+
+    Function target(final Value[] arguments) {
+        if (version != interpreter.functionsVersion() || !sameTypes(arguments)) {
+            argumentTypes = types(arguments);
+            function = lookUp(argumentTypes);
+            version = interpreter.functionsVersion();
+        }
+        return function;
+    }
+
+    // whether the arguments have the types of the last lookup
+    boolean sameTypes(final Value[] arguments) {
+        if (argumentTypes == null) {
+            return false;
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i].getType() != argumentTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the function for the arguments, without remembering it
+    Function lookUp(final Value[] arguments) {
+        return lookUp(types(arguments));
+    }
+
+    private Function lookUp(final Type[] types) {
+        Type parameterType = list ? new TypeList(Arrays.asList(types)) : types.length == 0 ? interpreter.getType(XLInterpreter.TYPE_UNIT) : types[0];
+        return interpreter.getFunction(name, parameterType);
+    }
+
+    private static Type[] types(final Value[] arguments) {
+        Type[] types = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            types[i] = arguments[i].getType();
+        }
+        return types;
+    }
+}
@@ -0,0 +1,292 @@
+package org.byteworks.xl.interpreter;
+
+import org.byteworks.lexer.Symbol;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.parser.node.ArgumentListNode;
+import org.byteworks.xl.parser.node.AssignmentNode;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.DivideNode;
+import org.byteworks.xl.parser.node.EmptyNode;
+import org.byteworks.xl.parser.node.ExpressionListNode;
+import org.byteworks.xl.parser.node.ExpressionNode;
+import org.byteworks.xl.parser.node.FunctionCallNode;
+import org.byteworks.xl.parser.node.FunctionDeclarationNode;
+import org.byteworks.xl.parser.node.IdentifierNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.MinusNode;
+import org.byteworks.xl.parser.node.MultiplyNode;
+import org.byteworks.xl.parser.node.NegativeSignedNode;
+import org.byteworks.xl.parser.node.PlusNode;
+import org.byteworks.xl.parser.node.PositiveSignedNode;
+import org.byteworks.xl.parser.node.PostDecrementNode;
+import org.byteworks.xl.parser.node.PostIncrementNode;
+import org.byteworks.xl.parser.node.PreDecrementNode;
+import org.byteworks.xl.parser.node.PreIncrementNode;
+import org.byteworks.xl.parser.node.UnaryOpNode;
+
+import java.util.List;
+import java.util.Stack;
+import java.util.function.LongBinaryOperator;
+
+import static org.byteworks.xl.interpreter.Operators.ADDITION;
+import static org.byteworks.xl.interpreter.Operators.DIVISION;
+import static org.byteworks.xl.interpreter.Operators.MULTIPLICATION;
+import static org.byteworks.xl.interpreter.Operators.POST_DECREMENT;
+import static org.byteworks.xl.interpreter.Operators.POST_INCREMENT;
+import static org.byteworks.xl.interpreter.Operators.PRE_DECREMENT;
+import static org.byteworks.xl.interpreter.Operators.PRE_INCREMENT;
+import static org.byteworks.xl.interpreter.Operators.SUBTRACTION;
+import static org.byteworks.xl.interpreter.XLInterpreter.TYPE_NUMBER;
+import static org.byteworks.xl.interpreter.XLInterpreter.UNARY_OPERAND_ERROR;
+
+/**
+ * Compiles XL expressions into trees of {@link Evaluator} closures for {@link XLInterpreter.Engine#CLOSURE}, with
+ * variables bound and functions looked up when compiled. A function is looked up again only once another has been
+ * registered, or a call's argument types change.
+ */
+final class ClosureCompiler {
+    interface Evaluator {
+        Value evaluate();
+    }
+
+    private final XLInterpreter xl;
+    private final Interpreter interpreter;
+    private final Operators operators;
+    private final Type number;
+
+    ClosureCompiler(final XLInterpreter xl) {
+        this.xl = xl;
+        this.interpreter = xl.interpreter;
+        this.operators = xl.operators;
+        this.number = interpreter.getType(TYPE_NUMBER);
+    }
+
+    Evaluator compile(final ExpressionNode expression) {
+        if (expression instanceof LiteralNode) {
+            Value value = xl.number(((LiteralNode) expression).getValue());
+            return () -> value;
+        } else if (expression instanceof IdentifierNode) {
+            return variable(((IdentifierNode) expression).getSymbol());
+        } else if (expression instanceof UnaryOpNode) {
+            return unaryOperator((UnaryOpNode) expression);
+        } else if (expression instanceof BinaryOpNode) {
+            return binaryOperator((BinaryOpNode) expression);
+        } else if (expression instanceof FunctionDeclarationNode) {
+            return functionDeclaration((FunctionDeclarationNode) expression);
+        } else if (expression instanceof FunctionCallNode) {
+            return functionCall((FunctionCallNode) expression);
+        } else if (expression instanceof ExpressionListNode) {
+            return expressionList((ExpressionListNode) expression);
+        }
+        return fail("Don't know how to evaluate expression " + expression);
+    }
+
+    private Evaluator compile(final Node node) {
+        if (node instanceof ExpressionNode) {
+            return compile((ExpressionNode) node);
+        }
+        return fail("Don't know how to evaluate expression " + node);
+    }
+
+    private static Evaluator fail(final String message) {
+        return () -> {
+            throw new IllegalStateException(message);
+        };
+    }
+
+    private Evaluator variable(final Symbol name) {
+        Interpreter.Binding binding = interpreter.binding(name);
+        return () -> {
+            Value value = binding.value;
+            if (value == null) {
+                throw new IllegalStateException("Could not resolve variable " + name);
+            }
+            return value;
+        };
+    }
+
+    private Evaluator expressionList(final ExpressionListNode expressionList) {
+        Evaluator[] expressions = expressionList.getList().stream().map(this::compile).toArray(Evaluator[]::new);
+        return () -> {
+            Value result = null;
+            for (Evaluator expression : expressions) {
+                result = expression.evaluate();
+            }
+            return result;
+        };
+    }
+
+    private Evaluator binaryOperator(final BinaryOpNode binaryOp) {
+        if (binaryOp instanceof AssignmentNode) {
+            return assignment(binaryOp);
+        }
+        Evaluator left = compile(binaryOp.getLhs());
+        Evaluator right = compile(binaryOp.getRhs());
+        if (binaryOp instanceof PlusNode) {
+            return new BinaryOperator(ADDITION, (l, r) -> l + r, left, right);
+        } else if (binaryOp instanceof MinusNode) {
+            return new BinaryOperator(SUBTRACTION, (l, r) -> l - r, left, right);
+        } else if (binaryOp instanceof MultiplyNode) {
+            return new BinaryOperator(MULTIPLICATION, (l, r) -> l * r, left, right);
+        } else if (binaryOp instanceof DivideNode) {
+            return new BinaryOperator(DIVISION, (l, r) -> l / r, left, right);
+        }
+        return fail("Don't know \nhow to evaluate binary operator " + binaryOp.getClass().getSimpleName() + " in expression " + binaryOp);
+    }
+
+    private Evaluator assignment(final BinaryOpNode assignment) {
+        if (!(assignment.getLhs() instanceof IdentifierNode)) {
+            return fail("The left hand side of an assignment must be an identifier in expression " + assignment);
+        }
+        Symbol name = ((IdentifierNode) assignment.getLhs()).getSymbol();
+        Interpreter.Binding binding = interpreter.binding(name);
+        Evaluator rhs = compile(assignment.getRhs());
+        return () -> {
+            Value value = rhs.evaluate();
+            if (value.isFunction()) {
+                return xl.assign(name, value);
+            }
+            binding.value = value;
+            return value;
+        };
+    }
+
+    private class BinaryOperator implements Evaluator {
+        private final int operator;
+        private final LongBinaryOperator operation;
+        private final Evaluator left;
+        private final Evaluator right;
+
+        BinaryOperator(final int operator, final LongBinaryOperator operation, final Evaluator left, final Evaluator right) {
+            this.operator = operator;
+            this.operation = operation;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Value evaluate() {
+            Value l = left.evaluate();
+            Value r = right.evaluate();
+            if (operators.builtIn(operator) && l.getType() == number && r.getType() == number) {
+                return xl.number(operation.applyAsLong(l.longValue(), r.longValue()));
+            }
+            // overridden, or the operands are not numbers and the built-in function reports it
+            return interpreter.callFunction(operators.function(operator), List.of(r, l));
+        }
+    }
+
+    private Evaluator unaryOperator(final UnaryOpNode unaryOp) {
+        Evaluator operand = compile(unaryOp.getExpr());
+        Interpreter.Binding binding = unaryOp.getExpr() instanceof IdentifierNode ? interpreter.binding(((IdentifierNode) unaryOp.getExpr()).getSymbol()) : null;
+        if (unaryOp instanceof NegativeSignedNode) {
+            return () -> xl.number(-numberOperand(operand, unaryOp).longValue());
+        } else if (unaryOp instanceof PositiveSignedNode) {
+            return () -> xl.positive(numberOperand(operand, unaryOp));
+        } else if (unaryOp instanceof PreIncrementNode) {
+            return new UnaryOperator(PRE_INCREMENT, 1, false, unaryOp, operand, binding);
+        } else if (unaryOp instanceof PreDecrementNode) {
+            return new UnaryOperator(PRE_DECREMENT, -1, false, unaryOp, operand, binding);
+        } else if (unaryOp instanceof PostIncrementNode) {
+            return new UnaryOperator(POST_INCREMENT, 1, true, unaryOp, operand, binding);
+        } else if (unaryOp instanceof PostDecrementNode) {
+            return new UnaryOperator(POST_DECREMENT, -1, true, unaryOp, operand, binding);
+        }
+        return fail("Unknown unary operator " + unaryOp + " in expression " + unaryOp);
+    }
+
+    private Value numberOperand(final Evaluator operand, final UnaryOpNode unaryOp) {
+        Value value = operand.evaluate();
+        if (!number.equals(value.getType())) {
+            throw new IllegalStateException(String.format(UNARY_OPERAND_ERROR + unaryOp, number, value.getType()));
+        }
+        return value;
+    }
+
+    private class UnaryOperator implements Evaluator {
+        private final int operator;
+        private final long delta;
+        private final boolean post;
+        private final UnaryOpNode unaryOp;
+        private final Evaluator operand;
+        // the variable the result is assigned to, if the operand is one
+        private final Interpreter.Binding binding;
+
+        UnaryOperator(final int operator, final long delta, final boolean post, final UnaryOpNode unaryOp, final Evaluator operand, final Interpreter.Binding binding) {
+            this.operator = operator;
+            this.delta = delta;
+            this.post = post;
+            this.unaryOp = unaryOp;
+            this.operand = operand;
+            this.binding = binding;
+        }
+
+        @Override
+        public Value evaluate() {
+            Value value = numberOperand(operand, unaryOp);
+            Value result;
+            if (operators.builtIn(operator) && value.getType() == number) {
+                result = xl.number(value.longValue() + delta);
+            } else {
+                result = interpreter.callFunction(operators.function(operator), List.of(value));
+            }
+            if (binding != null) {
+                binding.value = result;
+            }
+            return post ? value : result;
+        }
+    }
+
+    private Evaluator functionDeclaration(final FunctionDeclarationNode functionDeclaration) {
+        CompiledFunction implementation = new CompiledFunction(compile(functionDeclaration.getBody()));
+        return () -> xl.declareFunction(functionDeclaration, implementation);
+    }
+
+    private class CompiledFunction implements FunctionImplementation {
+        private final Evaluator body;
+
+        CompiledFunction(final Evaluator body) {
+            this.body = body;
+        }
+
+        @Override
+        public Value invoke(final FunctionSignature signature, final Stack<Value> stack) {
+            xl.bindParameters(signature, stack);
+            return body.evaluate();
+        }
+    }
+
+    private Evaluator functionCall(final FunctionCallNode functionCall) {
+        Node arguments = functionCall.getArguments();
+        if (arguments instanceof ArgumentListNode) {
+            ArgumentListNode argumentList = (ArgumentListNode) arguments;
+            Evaluator[] evaluators = new Evaluator[argumentList.size()];
+            for (int i = 0; i < evaluators.length; i++) {
+                evaluators[i] = compile(argumentList.get(i));
+            }
+            return new FunctionCall(functionCall.getSymbol(), evaluators, true);
+        } else if (arguments instanceof EmptyNode) {
+            return new FunctionCall(functionCall.getSymbol(), new Evaluator[0], false);
+        }
+        return new FunctionCall(functionCall.getSymbol(), new Evaluator[] { compile(arguments) }, false);
+    }
+
+    private class FunctionCall implements Evaluator {
+        private final CallSite callSite;
+        private final Evaluator[] arguments;
+
+        FunctionCall(final Symbol name, final Evaluator[] arguments, final boolean list) {
+            this.callSite = new CallSite(interpreter, name, list);
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Value evaluate() {
+            Value[] values = new Value[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].evaluate();
+            }
+            return interpreter.callFunction(callSite.target(values), values);
+        }
+    }
+}
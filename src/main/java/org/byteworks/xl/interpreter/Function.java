@@ -4,7 +4,8 @@ import java.util.Stack;
 
 public class Function {
     private final FunctionSignature signature;
-    private final FunctionImplementation impl;
+    private FunctionImplementation impl;
+    private int calls;
 
     public Function(final FunctionSignature signature, final FunctionImplementation impl) {
         this.signature = signature;
@@ -19,7 +20,19 @@ public class Function {
         return impl;
     }
 
+    /**
+     * Replace the implementation, with a compiled one that behaves the same.
+     */
+    void setImpl(final FunctionImplementation impl) {
+        this.impl = impl;
+    }
+
+    public int getCalls() {
+        return calls;
+    }
+
     public Value invoke(final Stack<Value> values) {
+        calls++;
         return impl.invoke(signature, values);
     }
 
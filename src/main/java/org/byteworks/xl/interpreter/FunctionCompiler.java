@@ -0,0 +1,11 @@
+package org.byteworks.xl.interpreter;
+
+/**
+ * Compiles functions that have become hot; see {@link Interpreter#setCompiler(FunctionCompiler, int)}.
+ */
+public interface FunctionCompiler {
+    /**
+     * A faster implementation of the function, or null to keep running the one it has.
+     */
+    FunctionImplementation compile(Function function);
+}
@@ -1,15 +1,25 @@
 package org.byteworks.xl.interpreter;
 
+import org.byteworks.lexer.Symbol;
+
 public class FunctionParameter {
-    private final String name;
+    private final Symbol name;
     private final Type type;
 
     public FunctionParameter(final String name, final Type type) {
+        this(Symbol.intern(name), type);
+    }
+
+    public FunctionParameter(final Symbol name, final Type type) {
         this.name = name;
         this.type = type;
     }
 
     public String getName() {
+        return name.name();
+    }
+
+    public Symbol getSymbol() {
         return name;
     }
 
@@ -1,36 +1,102 @@
 package org.byteworks.xl.interpreter;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
+import org.byteworks.lexer.Symbol;
+
 /*
     NOTE: keep this class DECOUPLED from language-specific classes
  */
 
 public class Interpreter {
-    private final Map<String, Value> heap = new HashMap<>();
-    private final Map<String, Map<Type, Function>> functions = new HashMap<>();
+    // variables and functions bound to a name; indexed by Symbol.id()
+    static class Binding {
+        Value value;
+        Map<Type, Function> functions;
+    }
+
+    private Binding[] bindings = new Binding[64];
     private final Stack<Value> stack = new Stack<>();
     private final Map<String, Type> types = new HashMap<>();
+    // bumped whenever a function is registered, so that callers caching a function they looked up know to look again
+    private int functionsVersion;
+    private FunctionCompiler compiler;
+    private int compileThreshold;
+
+    Binding binding(Symbol name) {
+        int id = name.id();
+        if (id >= bindings.length) {
+            bindings = Arrays.copyOf(bindings, Math.max(bindings.length * 2, id + 1));
+        }
+        Binding binding = bindings[id];
+        if (binding == null) {
+            binding = new Binding();
+            bindings[id] = binding;
+        }
+        return binding;
+    }
+
+    private Binding lookup(Symbol name) {
+        int id = name.id();
+        return id < bindings.length ? bindings[id] : null;
+    }
 
     public Function registerFunction(String name, List<FunctionParameter> functionParameters, Type parameterType, Type returnType, FunctionImplementation impl) {
+        return registerFunction(Symbol.intern(name), functionParameters, parameterType, returnType, impl);
+    }
+
+    public Function registerFunction(Symbol name, List<FunctionParameter> functionParameters, Type parameterType, Type returnType, FunctionImplementation impl) {
         Function function = new Function(new FunctionSignature(functionParameters, parameterType, returnType), impl);
-        Map<Type, Function> bound = functions.computeIfAbsent(name, k -> new HashMap<>());
-        bound.put(function.getSignature().getParameterType(), function);
+        Binding binding = binding(name);
+        if (binding.functions == null) {
+            binding.functions = new HashMap<>();
+        }
+        binding.functions.put(function.getSignature().getParameterType(), function);
+        functionsVersion++;
         return function;
     }
 
     public Function getFunction(final String name, final Type parameterType) {
-        Map<Type, Function> bound = functions.get(name);
-        Function function = bound.get(parameterType);
+        return getFunction(Symbol.intern(name), parameterType);
+    }
+
+    public Function getFunction(final Symbol name, final Type parameterType) {
+        Binding binding = lookup(name);
+        Function function = binding == null || binding.functions == null ? null : binding.functions.get(parameterType);
         if (function == null) {
             throw new IllegalArgumentException("Could not find function named '" + name + "' with parameter(s) '" + parameterType + "'");
         }
         return function;
     }
 
+    /**
+     * The function whose parameter type is a TypeList of the types of the arguments, found without making the TypeList.
+     */
+    public Function getFunction(final Symbol name, final Value[] arguments) {
+        Binding binding = lookup(name);
+        if (binding != null && binding.functions != null) {
+            for (Function function : binding.functions.values()) {
+                Type parameterType = function.getSignature().getParameterType();
+                if (parameterType instanceof TypeList && ((TypeList) parameterType).matches(arguments)) {
+                    return function;
+                }
+            }
+        }
+        Type[] types = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            types[i] = arguments[i].getType();
+        }
+        return getFunction(name, new TypeList(Arrays.asList(types)));
+    }
+
+    int functionsVersion() {
+        return functionsVersion;
+    }
+
     public void registerType(final String name, final Type type) {
         types.put(name, type);
     }
@@ -44,20 +110,62 @@ public class Interpreter {
     }
 
     public Value getVariable(final String name) {
-        return heap.get(name);
+        return getVariable(Symbol.intern(name));
+    }
+
+    public Value getVariable(final Symbol name) {
+        Binding binding = lookup(name);
+        return binding == null ? null : binding.value;
     }
 
     public void assignVariableValue(String identifierName, Value value) {
-        heap.put(identifierName, value);
+        assignVariableValue(Symbol.intern(identifierName), value);
+    }
+
+    public void assignVariableValue(Symbol identifierName, Value value) {
+        binding(identifierName).value = value;
+    }
+
+    /**
+     * Have functions compiled just before their call after the threshold; a threshold of 0 compiles every function
+     * before its first call, and a null compiler none.
+     */
+    public void setCompiler(final FunctionCompiler compiler, final int compileThreshold) {
+        this.compiler = compiler;
+        this.compileThreshold = compileThreshold;
     }
 
     public Value callFunction(Function function, List<Value> arguments) {
-        arguments.forEach(stack::push);
+        compileIfHot(function);
+        for (int i = 0; i < arguments.size(); i++) {
+            stack.push(arguments.get(i));
+        }
         return function.invoke(stack);
     }
 
+    public Value callFunction(Function function, Value[] arguments) {
+        compileIfHot(function);
+        for (Value argument : arguments) {
+            stack.push(argument);
+        }
+        return function.invoke(stack);
+    }
+
+    private void compileIfHot(Function function) {
+        if (compiler != null && function.getCalls() == compileThreshold) {
+            FunctionImplementation compiled = compiler.compile(function);
+            if (compiled != null) {
+                function.setImpl(compiled);
+            }
+        }
+    }
+
     public Value identifier(String identifierName) {
-        Value ident = heap.get(identifierName);
+        return identifier(Symbol.intern(identifierName));
+    }
+
+    public Value identifier(Symbol identifierName) {
+        Value ident = getVariable(identifierName);
         if (ident == null) {
             throw new IllegalStateException("Could not resolve variable " + identifierName);
         }
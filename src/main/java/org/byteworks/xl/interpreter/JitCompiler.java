@@ -0,0 +1,275 @@
+package org.byteworks.xl.interpreter;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.byteworks.parser.Node;
+import org.byteworks.xl.parser.node.ArgumentListNode;
+import org.byteworks.xl.parser.node.AssignmentNode;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.DivideNode;
+import org.byteworks.xl.parser.node.EmptyNode;
+import org.byteworks.xl.parser.node.ExpressionListNode;
+import org.byteworks.xl.parser.node.ExpressionNode;
+import org.byteworks.xl.parser.node.FunctionCallNode;
+import org.byteworks.xl.parser.node.IdentifierNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.MinusNode;
+import org.byteworks.xl.parser.node.MultiplyNode;
+import org.byteworks.xl.parser.node.NegativeSignedNode;
+import org.byteworks.xl.parser.node.PlusNode;
+import org.byteworks.xl.parser.node.PositiveSignedNode;
+import org.byteworks.xl.parser.node.PostDecrementNode;
+import org.byteworks.xl.parser.node.PostIncrementNode;
+import org.byteworks.xl.parser.node.PreDecrementNode;
+import org.byteworks.xl.parser.node.PreIncrementNode;
+import org.byteworks.xl.parser.node.UnaryOpNode;
+
+/**
+ * Compiles the bodies of hot tree-walked functions into subclasses of {@link JitFunction}, for
+ * {@link XLInterpreter.Tier#ADAPTIVE} and {@link XLInterpreter.Tier#COMPILED}. The classes stay loaded for the life of
+ * the class loader, which is why compiling is opt-in.
+ */
+final class JitCompiler implements FunctionCompiler {
+    private static final String PACKAGE = "org/byteworks/xl/interpreter/";
+    private static final String SUPER = PACKAGE + "JitFunction";
+    private static final String VALUE = "L" + PACKAGE + "Value;";
+    private static final String POOL = "L" + PACKAGE + "JitFunction$Pool;";
+    private static final AtomicInteger CLASSES = new AtomicInteger();
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int AASTORE = 0x53;
+    private static final int POP = 0x57;
+    private static final int DUP = 0x59;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int ANEWARRAY = 0xbd;
+
+    private final XLInterpreter xl;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    JitCompiler(final XLInterpreter xl) {
+        this.xl = xl;
+    }
+
+    @Override
+    public FunctionImplementation compile(final Function function) {
+        if (!(function.getImpl() instanceof XLInterpreter.InterpretedFunction)) {
+            return null;
+        }
+        try {
+            ExpressionNode body = ((XLInterpreter.InterpretedFunction) function.getImpl()).expression;
+            String name = PACKAGE + "JitFunction$" + CLASSES.incrementAndGet();
+            Assembler assembler = new Assembler(name);
+            assembler.expression(body);
+            Class<?> compiled = lookup.defineClass(assembler.toByteArray());
+            return (FunctionImplementation) compiled.getDeclaredConstructor(JitFunction.Pool.class).newInstance(assembler.pool);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // the function carries on being interpreted
+            return null;
+        }
+    }
+
+    private class Assembler {
+        private final String name;
+        private final ClassFileWriter classFile;
+        private final JitFunction.Pool pool = new JitFunction.Pool(xl);
+        private byte[] code = new byte[256];
+        private int length;
+        private int depth;
+        private int maxDepth;
+
+        Assembler(final String name) {
+            this.name = name;
+            this.classFile = new ClassFileWriter(name, SUPER);
+        }
+
+        byte[] toByteArray() {
+            byte[] body = Arrays.copyOf(code, length + 1);
+            body[length] = (byte) ARETURN;
+            int bodyMaxDepth = maxDepth;
+            // <init>(Pool) { super(pool); }
+            length = 0;
+            emit(ALOAD_0);
+            emit(ALOAD_1);
+            emit(INVOKESPECIAL);
+            emitShort(classFile.methodRef(SUPER, "<init>", "(" + POOL + ")V"));
+            emit(RETURN);
+            classFile.method(0, "<init>", "(" + POOL + ")V", 2, 2, code, length);
+            classFile.method(0, "body", "()" + VALUE, bodyMaxDepth, 1, body, body.length);
+            return classFile.toByteArray();
+        }
+
+        void expression(final ExpressionNode expression) {
+            if (expression instanceof LiteralNode) {
+                push(ALOAD_0);
+                pushInt(pool.literal(((LiteralNode) expression).getValue()));
+                invoke("literal", "(I)" + VALUE, 1);
+            } else if (expression instanceof IdentifierNode) {
+                push(ALOAD_0);
+                pushInt(pool.symbol(((IdentifierNode) expression).getSymbol()));
+                invoke("variable", "(I)" + VALUE, 1);
+            } else if (expression instanceof AssignmentNode && ((AssignmentNode) expression).getLhs() instanceof IdentifierNode) {
+                push(ALOAD_0);
+                pushInt(pool.symbol(((IdentifierNode) ((AssignmentNode) expression).getLhs()).getSymbol()));
+                expression(((AssignmentNode) expression).getRhs());
+                invoke("assign", "(I" + VALUE + ")" + VALUE, 2);
+            } else if (expression instanceof PlusNode) {
+                binaryOperator((PlusNode) expression, "add");
+            } else if (expression instanceof MinusNode) {
+                binaryOperator((MinusNode) expression, "subtract");
+            } else if (expression instanceof MultiplyNode) {
+                binaryOperator((MultiplyNode) expression, "multiply");
+            } else if (expression instanceof DivideNode) {
+                binaryOperator((DivideNode) expression, "divide");
+            } else if (expression instanceof NegativeSignedNode) {
+                unaryOperator((UnaryOpNode) expression, "negate", false);
+            } else if (expression instanceof PositiveSignedNode) {
+                unaryOperator((UnaryOpNode) expression, "plus", false);
+            } else if (expression instanceof PreIncrementNode) {
+                unaryOperator((UnaryOpNode) expression, "preIncrement", true);
+            } else if (expression instanceof PreDecrementNode) {
+                unaryOperator((UnaryOpNode) expression, "preDecrement", true);
+            } else if (expression instanceof PostIncrementNode) {
+                unaryOperator((UnaryOpNode) expression, "postIncrement", true);
+            } else if (expression instanceof PostDecrementNode) {
+                unaryOperator((UnaryOpNode) expression, "postDecrement", true);
+            } else if (expression instanceof FunctionCallNode && isExpression(((FunctionCallNode) expression).getArguments())) {
+                functionCall((FunctionCallNode) expression);
+            } else if (expression instanceof ExpressionListNode && !((ExpressionListNode) expression).getList().isEmpty()) {
+                List<ExpressionNode> list = ((ExpressionListNode) expression).getList();
+                for (int i = 0; i < list.size(); i++) {
+                    if (i > 0) {
+                        pop();
+                    }
+                    expression(list.get(i));
+                }
+            } else if (expression instanceof ExpressionListNode) {
+                push(ACONST_NULL);
+            } else {
+                push(ALOAD_0);
+                pushInt(pool.node(expression));
+                invoke("evaluate", "(I)" + VALUE, 1);
+            }
+        }
+
+        private boolean isExpression(Node arguments) {
+            if (arguments instanceof ArgumentListNode) {
+                return ((ArgumentListNode) arguments).getArguments().stream().allMatch(it -> it instanceof ExpressionNode);
+            }
+            return arguments instanceof ExpressionNode || arguments instanceof EmptyNode;
+        }
+
+        private void binaryOperator(final BinaryOpNode binaryOp, final String operation) {
+            push(ALOAD_0);
+            expression(binaryOp.getLhs());
+            expression(binaryOp.getRhs());
+            invoke(operation, "(" + VALUE + VALUE + ")" + VALUE, 2);
+        }
+
+        private void unaryOperator(final UnaryOpNode unaryOp, final String operation, final boolean assigns) {
+            push(ALOAD_0);
+            expression(unaryOp.getExpr());
+            pushInt(pool.node(unaryOp));
+            if (assigns) {
+                pushInt(unaryOp.getExpr() instanceof IdentifierNode ? pool.symbol(((IdentifierNode) unaryOp.getExpr()).getSymbol()) : -1);
+                invoke(operation, "(" + VALUE + "II)" + VALUE, 3);
+            } else {
+                invoke(operation, "(" + VALUE + "I)" + VALUE, 2);
+            }
+        }
+
+        private void functionCall(final FunctionCallNode functionCall) {
+            Node arguments = functionCall.getArguments();
+            boolean list = arguments instanceof ArgumentListNode;
+            push(ALOAD_0);
+            pushInt(pool.callSite(functionCall.getSymbol(), list));
+            if (list) {
+                ArgumentListNode argumentList = (ArgumentListNode) arguments;
+                newValueArray(argumentList.size());
+                for (int i = 0; i < argumentList.size(); i++) {
+                    push(DUP);
+                    pushInt(i);
+                    expression((ExpressionNode) argumentList.get(i));
+                    store();
+                }
+            } else if (arguments instanceof EmptyNode) {
+                newValueArray(0);
+            } else {
+                newValueArray(1);
+                push(DUP);
+                pushInt(0);
+                expression((ExpressionNode) arguments);
+                store();
+            }
+            invoke("call", "(I[" + VALUE + ")" + VALUE, 2);
+        }
+
+        private void newValueArray(int size) {
+            pushInt(size);
+            emit(ANEWARRAY);
+            emitShort(classFile.classRef(PACKAGE + "Value"));
+        }
+
+        // aastore: array, index, value -> nothing
+        private void store() {
+            emit(AASTORE);
+            depth -= 3;
+        }
+
+        private void pop() {
+            emit(POP);
+            depth--;
+        }
+
+        private void push(int opcode) {
+            emit(opcode);
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                push(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                push(BIPUSH);
+                emit(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                push(SIPUSH);
+                emitShort(value);
+            } else {
+                push(LDC_W);
+                emitShort(classFile.integer(value));
+            }
+        }
+
+        // a call on this JitFunction, taking the receiver and arguments off the stack and pushing the result
+        private void invoke(String method, String descriptor, int arguments) {
+            emit(INVOKEVIRTUAL);
+            emitShort(classFile.methodRef(name, method, descriptor));
+            depth -= arguments;
+        }
+
+        private void emit(int b) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[length++] = (byte) b;
+        }
+
+        private void emitShort(int value) {
+            emit(value >> 8);
+            emit(value);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.byteworks.xl.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.byteworks.lexer.Symbol;
+import org.byteworks.xl.parser.node.ExpressionNode;
+
+import static org.byteworks.xl.interpreter.Operators.ADDITION;
+import static org.byteworks.xl.interpreter.Operators.DIVISION;
+import static org.byteworks.xl.interpreter.Operators.MULTIPLICATION;
+import static org.byteworks.xl.interpreter.Operators.POST_DECREMENT;
+import static org.byteworks.xl.interpreter.Operators.POST_INCREMENT;
+import static org.byteworks.xl.interpreter.Operators.PRE_DECREMENT;
+import static org.byteworks.xl.interpreter.Operators.PRE_INCREMENT;
+import static org.byteworks.xl.interpreter.Operators.SUBTRACTION;
+import static org.byteworks.xl.interpreter.XLInterpreter.TYPE_NUMBER;
+import static org.byteworks.xl.interpreter.XLInterpreter.UNARY_OPERAND_ERROR;
+
+/**
+ * The superclass of the classes {@link JitCompiler} generates for function bodies, whose body() is a straight line of
+ * calls to the operations here; each behaves as the tree walker does for its node.
+ */
+abstract class JitFunction implements FunctionImplementation {
+    private final XLInterpreter xl;
+    private final Interpreter interpreter;
+    private final Operators operators;
+    private final Type number;
+    private final Value[] literals;
+    private final Symbol[] symbols;
+    private final Interpreter.Binding[] bindings;
+    private final ExpressionNode[] nodes;
+    private final CallSite[] callSites;
+
+    /**
+     * The literals, variables, nodes and call sites a generated class refers to by index.
+     */
+    static final class Pool {
+        private final XLInterpreter xl;
+        private final List<Value> literals = new ArrayList<>();
+        private final List<Symbol> symbols = new ArrayList<>();
+        private final List<ExpressionNode> nodes = new ArrayList<>();
+        private final List<CallSite> callSites = new ArrayList<>();
+
+        Pool(final XLInterpreter xl) {
+            this.xl = xl;
+        }
+
+        int literal(long value) {
+            literals.add(xl.number(value));
+            return literals.size() - 1;
+        }
+
+        int symbol(Symbol symbol) {
+            int index = symbols.indexOf(symbol);
+            if (index < 0) {
+                symbols.add(symbol);
+                index = symbols.size() - 1;
+            }
+            return index;
+        }
+
+        int node(ExpressionNode node) {
+            nodes.add(node);
+            return nodes.size() - 1;
+        }
+
+        int callSite(Symbol name, boolean list) {
+            callSites.add(new CallSite(xl.interpreter, name, list));
+            return callSites.size() - 1;
+        }
+    }
+
+    JitFunction(final Pool pool) {
+        this.xl = pool.xl;
+        this.interpreter = xl.interpreter;
+        this.operators = xl.operators;
+        this.number = interpreter.getType(TYPE_NUMBER);
+        this.literals = pool.literals.toArray(new Value[0]);
+        this.symbols = pool.symbols.toArray(new Symbol[0]);
+        this.bindings = new Interpreter.Binding[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            bindings[i] = interpreter.binding(symbols[i]);
+        }
+        this.nodes = pool.nodes.toArray(new ExpressionNode[0]);
+        this.callSites = pool.callSites.toArray(new CallSite[0]);
+    }
+
+    @Override
+    public final Value invoke(final FunctionSignature signature, final Stack<Value> stack) {
+        xl.bindParameters(signature, stack);
+        return body();
+    }
+
+    abstract Value body();
+
+    final Value literal(final int literal) {
+        return literals[literal];
+    }
+
+    final Value variable(final int symbol) {
+        Value value = bindings[symbol].value;
+        if (value == null) {
+            throw new IllegalStateException("Could not resolve variable " + symbols[symbol]);
+        }
+        return value;
+    }
+
+    final Value assign(final int symbol, final Value value) {
+        if (value.isFunction()) {
+            return xl.assign(symbols[symbol], value);
+        }
+        bindings[symbol].value = value;
+        return value;
+    }
+
+    final Value evaluate(final int node) {
+        return xl.evaluateExpression(nodes[node]);
+    }
+
+    final Value add(final Value left, final Value right) {
+        if (operators.builtIn(ADDITION) && numbers(left, right)) {
+            return xl.number(left.longValue() + right.longValue());
+        }
+        return interpreter.callFunction(operators.function(ADDITION), List.of(right, left));
+    }
+
+    final Value subtract(final Value left, final Value right) {
+        if (operators.builtIn(SUBTRACTION) && numbers(left, right)) {
+            return xl.number(left.longValue() - right.longValue());
+        }
+        return interpreter.callFunction(operators.function(SUBTRACTION), List.of(right, left));
+    }
+
+    final Value multiply(final Value left, final Value right) {
+        if (operators.builtIn(MULTIPLICATION) && numbers(left, right)) {
+            return xl.number(left.longValue() * right.longValue());
+        }
+        return interpreter.callFunction(operators.function(MULTIPLICATION), List.of(right, left));
+    }
+
+    final Value divide(final Value left, final Value right) {
+        if (operators.builtIn(DIVISION) && numbers(left, right)) {
+            return xl.number(left.longValue() / right.longValue());
+        }
+        return interpreter.callFunction(operators.function(DIVISION), List.of(right, left));
+    }
+
+    private boolean numbers(final Value left, final Value right) {
+        return left.getType() == number && right.getType() == number;
+    }
+
+    final Value negate(final Value operand, final int node) {
+        checkNumber(operand, node);
+        return xl.number(-operand.longValue());
+    }
+
+    final Value plus(final Value operand, final int node) {
+        checkNumber(operand, node);
+        return xl.positive(operand);
+    }
+
+    final Value preIncrement(final Value operand, final int node, final int symbol) {
+        return step(PRE_INCREMENT, 1, operand, node, symbol);
+    }
+
+    final Value preDecrement(final Value operand, final int node, final int symbol) {
+        return step(PRE_DECREMENT, -1, operand, node, symbol);
+    }
+
+    final Value postIncrement(final Value operand, final int node, final int symbol) {
+        step(POST_INCREMENT, 1, operand, node, symbol);
+        return operand;
+    }
+
+    final Value postDecrement(final Value operand, final int node, final int symbol) {
+        step(POST_DECREMENT, -1, operand, node, symbol);
+        return operand;
+    }
+
+    // the result of an increment or decrement, assigned to the variable unless symbol is -1
+    private Value step(final int operator, final long delta, final Value operand, final int node, final int symbol) {
+        checkNumber(operand, node);
+        Value result;
+        if (operators.builtIn(operator) && operand.getType() == number) {
+            result = xl.number(operand.longValue() + delta);
+        } else {
+            result = interpreter.callFunction(operators.function(operator), List.of(operand));
+        }
+        if (symbol >= 0) {
+            bindings[symbol].value = result;
+        }
+        return result;
+    }
+
+    private void checkNumber(final Value operand, final int node) {
+        if (!number.equals(operand.getType())) {
+            throw new IllegalStateException(String.format(UNARY_OPERAND_ERROR + nodes[node], number, operand.getType()));
+        }
+    }
+
+    final Value call(final int site, final Value[] arguments) {
+        return interpreter.callFunction(callSites[site].target(arguments), arguments);
+    }
+}
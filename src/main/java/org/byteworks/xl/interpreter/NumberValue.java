@@ -0,0 +1,28 @@
+package org.byteworks.xl.interpreter;
+
+/**
+ * A number, held as a long rather than a boxed Long.
+ */
+public final class NumberValue extends Value {
+    private final long number;
+
+    public NumberValue(final long number, final Type type) {
+        super(null, type);
+        this.number = number;
+    }
+
+    @Override
+    public Object getValue() {
+        return number;
+    }
+
+    @Override
+    public long longValue() {
+        return number;
+    }
+
+    @Override
+    public String toString() {
+        return number + ": " + getType();
+    }
+}
@@ -0,0 +1,61 @@
+package org.byteworks.xl.interpreter;
+
+import java.util.List;
+
+import org.byteworks.lexer.Symbol;
+
+/**
+ * The functions of an interpreter's arithmetic operators, looked up again whenever a function has been registered, and
+ * whether each is still the built-in one, whose arithmetic the engines may then do themselves.
+ */
+final class Operators {
+    static final int ADDITION = 0;
+    static final int SUBTRACTION = 1;
+    static final int MULTIPLICATION = 2;
+    static final int DIVISION = 3;
+    static final int PRE_INCREMENT = 4;
+    static final int PRE_DECREMENT = 5;
+    static final int POST_INCREMENT = 6;
+    static final int POST_DECREMENT = 7;
+
+    private static final Symbol[] NAMES = { XLInterpreter.ADD, XLInterpreter.SUBTRACT, XLInterpreter.MULTIPLY, XLInterpreter.DIVIDE,
+            XLInterpreter.PRE_INCREMENT, XLInterpreter.PRE_DECREMENT, XLInterpreter.POST_INCREMENT, XLInterpreter.POST_DECREMENT };
+
+    private final Interpreter interpreter;
+    private final Type[] parameterTypes;
+    private final FunctionImplementation[] builtIns;
+    private final Function[] functions = new Function[NAMES.length];
+    private final boolean[] builtIn = new boolean[NAMES.length];
+    private int version = -1;
+
+    Operators(final XLInterpreter xl) {
+        this.interpreter = xl.interpreter;
+        Type number = interpreter.getType(XLInterpreter.TYPE_NUMBER);
+        Type twoNumbers = new TypeList(List.of(number, number));
+        this.parameterTypes = new Type[] { twoNumbers, twoNumbers, twoNumbers, twoNumbers, number, number, number, number };
+        this.builtIns = new FunctionImplementation[] { xl.numericAddition, xl.numericSubtraction, xl.numericMultiplication, xl.numericDivision,
+                xl.preIncrement, xl.preDecrement, xl.postIncrement, xl.postDecrement };
+    }
+
+    boolean builtIn(final int operator) {
+        if (version != interpreter.functionsVersion()) {
+            lookUp();
+        }
+        return builtIn[operator];
+    }
+
+    Function function(final int operator) {
+        if (version != interpreter.functionsVersion()) {
+            lookUp();
+        }
+        return functions[operator];
+    }
+
+    private void lookUp() {
+        for (int i = 0; i < NAMES.length; i++) {
+            functions[i] = interpreter.getFunction(NAMES[i], parameterTypes[i]);
+            builtIn[i] = functions[i].getImpl() == builtIns[i];
+        }
+        version = interpreter.functionsVersion();
+    }
+}
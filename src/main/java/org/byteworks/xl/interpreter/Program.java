@@ -0,0 +1,156 @@
+package org.byteworks.xl.interpreter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.byteworks.lexer.Symbol;
+import org.byteworks.parser.Node;
+
+/**
+ * XL statements compiled to bytecode for {@link BytecodeVM}: one int array of opcodes, each followed by its operands. A
+ * program is immutable and interpreter independent, so any number of interpreters can run it, and it can be written to
+ * a stream and read back.
+ */
+public final class Program {
+    // operands: NUMBER k, LOAD s, STORE s, NEGATE t, PLUS t, the increments and decrements t s (s is -1 for none),
+    // CALL s n l c, DECLARE n (s t)* r t* length, FAIL t; k, s and t index the number, symbol and text pools
+    static final int NUMBER = 0;
+    static final int LOAD = 1;
+    static final int STORE = 2;
+    static final int ADD = 3;
+    static final int SUBTRACT = 4;
+    static final int MULTIPLY = 5;
+    static final int DIVIDE = 6;
+    static final int NEGATE = 7;
+    static final int PLUS = 8;
+    static final int PRE_INCREMENT = 9;
+    static final int PRE_DECREMENT = 10;
+    static final int POST_INCREMENT = 11;
+    static final int POST_DECREMENT = 12;
+    static final int CALL = 13;
+    static final int DECLARE = 14;
+    static final int POP = 15;
+    static final int NULL = 16;
+    static final int FAIL = 17;
+    static final int RETURN = 18;
+
+    private static final int MAGIC = 0x584c4200;
+    private static final int VERSION = 1;
+
+    final int[] code;
+    // the offset of each statement's code, or the complement of the index of the text it prints
+    final int[] statements;
+    final long[] numbers;
+    final Symbol[] symbols;
+    final String[] texts;
+    final int callSites;
+    // the linking of the interpreter that last ran this program
+    BytecodeVM.Linked linked;
+
+    Program(final int[] code, final int[] statements, final long[] numbers, final Symbol[] symbols, final String[] texts, final int callSites) {
+        this.code = code;
+        this.statements = statements;
+        this.numbers = numbers;
+        this.symbols = symbols;
+        this.texts = texts;
+        this.callSites = callSites;
+    }
+
+    public static Program compile(List<? extends Node> statements) {
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        for (Node statement : statements) {
+            compiler.statement(statement);
+        }
+        return compiler.build();
+    }
+
+    public int statementCount() {
+        return statements.length;
+    }
+
+    public int codeLength() {
+        return code.length;
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(callSites);
+        writeInts(out, code);
+        writeInts(out, statements);
+        out.writeInt(numbers.length);
+        for (long number : numbers) {
+            out.writeLong(number);
+        }
+        out.writeInt(symbols.length);
+        for (Symbol symbol : symbols) {
+            writeString(out, symbol.name());
+        }
+        out.writeInt(texts.length);
+        for (String text : texts) {
+            writeString(out, text);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a program written by {@link #write(OutputStream)}. The code is trusted, so read programs only from where
+     * they were written.
+     */
+    public static Program read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " XL program");
+        }
+        int callSites = in.readInt();
+        int[] code = readInts(in);
+        int[] statements = readInts(in);
+        long[] numbers = new long[in.readInt()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = in.readLong();
+        }
+        Symbol[] symbols = new Symbol[in.readInt()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = Symbol.intern(readString(in));
+        }
+        String[] texts = new String[in.readInt()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = readString(in);
+        }
+        return new Program(code, statements, numbers, symbols, texts, callSites);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    // not writeUTF, which is limited to 64K, and expression texts can be longer
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeInt(string.length());
+        out.writeChars(string);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,615 @@
+package org.byteworks.xl.interpreter;
+
+import org.byteworks.lexer.Symbol;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.parser.node.ArgumentListNode;
+import org.byteworks.xl.parser.node.AssignmentNode;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.DivideNode;
+import org.byteworks.xl.parser.node.EmptyNode;
+import org.byteworks.xl.parser.node.ExpressionListNode;
+import org.byteworks.xl.parser.node.ExpressionNode;
+import org.byteworks.xl.parser.node.FunctionCallNode;
+import org.byteworks.xl.parser.node.FunctionDeclarationNode;
+import org.byteworks.xl.parser.node.IdentifierNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.MinusNode;
+import org.byteworks.xl.parser.node.MultiplyNode;
+import org.byteworks.xl.parser.node.NegativeSignedNode;
+import org.byteworks.xl.parser.node.PlusNode;
+import org.byteworks.xl.parser.node.PositiveSignedNode;
+import org.byteworks.xl.parser.node.PostDecrementNode;
+import org.byteworks.xl.parser.node.PostIncrementNode;
+import org.byteworks.xl.parser.node.PreDecrementNode;
+import org.byteworks.xl.parser.node.PreIncrementNode;
+import org.byteworks.xl.parser.node.UnaryOpNode;
+
+import java.util.List;
+import java.util.Stack;
+
+import static org.byteworks.xl.interpreter.Operators.ADDITION;
+import static org.byteworks.xl.interpreter.Operators.DIVISION;
+import static org.byteworks.xl.interpreter.Operators.MULTIPLICATION;
+import static org.byteworks.xl.interpreter.Operators.POST_DECREMENT;
+import static org.byteworks.xl.interpreter.Operators.POST_INCREMENT;
+import static org.byteworks.xl.interpreter.Operators.PRE_DECREMENT;
+import static org.byteworks.xl.interpreter.Operators.PRE_INCREMENT;
+import static org.byteworks.xl.interpreter.Operators.SUBTRACTION;
+import static org.byteworks.xl.interpreter.XLInterpreter.TYPE_NUMBER;
+import static org.byteworks.xl.interpreter.XLInterpreter.UNARY_OPERAND_ERROR;
+
+/**
+ * Compiles XL expressions into trees of {@link Evaluator} nodes for {@link XLInterpreter.Engine#SPECIALIZING}. Each
+ * operator or call replaces itself, when first evaluated, with a node specialized to the types it sees, and with the
+ * generic node once those change.
+ */
+final class SpecializingCompiler {
+    /**
+     * A node of a compiled expression, which may replace itself, or one of its children, in the tree.
+     */
+    abstract static class Evaluator {
+        private Evaluator parent;
+
+        abstract Value evaluate();
+
+        final <T extends Evaluator> T adopt(final T child) {
+            ((Evaluator) child).parent = this;
+            return child;
+        }
+
+        /**
+         * Put this node's replacement where it is in its parent, and return it.
+         */
+        final <T extends Evaluator> T replace(final T replacement) {
+            parent.replaceChild(this, replacement);
+            ((Evaluator) replacement).parent = parent;
+            return replacement;
+        }
+
+        void replaceChild(final Evaluator child, final Evaluator replacement) {
+            throw new IllegalStateException(getClass().getSimpleName() + " has no children to replace");
+        }
+    }
+
+    /**
+     * The top of a compiled statement or function body, which holds it while its nodes replace themselves.
+     */
+    static final class Root extends Evaluator {
+        private Evaluator body;
+
+        Root(final Evaluator body) {
+            this.body = adopt(body);
+        }
+
+        Evaluator getBody() {
+            return body;
+        }
+
+        @Override
+        Value evaluate() {
+            return body.evaluate();
+        }
+
+        @Override
+        void replaceChild(final Evaluator child, final Evaluator replacement) {
+            body = replacement;
+        }
+    }
+
+    // the unary operators besides the Operators, which have no function
+    private static final int NEGATION = -1;
+    private static final int IDENTITY = -2;
+
+    private final XLInterpreter xl;
+    private final Interpreter interpreter;
+    private final Operators operators;
+    private final Type number;
+
+    SpecializingCompiler(final XLInterpreter xl) {
+        this.xl = xl;
+        this.interpreter = xl.interpreter;
+        this.operators = xl.operators;
+        this.number = interpreter.getType(TYPE_NUMBER);
+    }
+
+    Root compile(final ExpressionNode expression) {
+        return new Root(evaluator(expression));
+    }
+
+    private Evaluator evaluator(final ExpressionNode expression) {
+        if (expression instanceof LiteralNode) {
+            return new Literal(xl.number(((LiteralNode) expression).getValue()));
+        } else if (expression instanceof IdentifierNode) {
+            return new Variable(((IdentifierNode) expression).getSymbol());
+        } else if (expression instanceof UnaryOpNode) {
+            return unaryOperator((UnaryOpNode) expression);
+        } else if (expression instanceof BinaryOpNode) {
+            return binaryOperator((BinaryOpNode) expression);
+        } else if (expression instanceof FunctionDeclarationNode) {
+            return functionDeclaration((FunctionDeclarationNode) expression);
+        } else if (expression instanceof FunctionCallNode) {
+            return functionCall((FunctionCallNode) expression);
+        } else if (expression instanceof ExpressionListNode) {
+            List<ExpressionNode> list = ((ExpressionListNode) expression).getList();
+            // a function body is usually a list of one expression, which may as well be evaluated directly
+            if (list.size() == 1) {
+                return evaluator(list.get(0));
+            }
+            return new ExpressionList(list.stream().map(this::evaluator).toArray(Evaluator[]::new));
+        }
+        return new Fail("Don't know how to evaluate expression " + expression);
+    }
+
+    private Evaluator evaluator(final Node node) {
+        if (node instanceof ExpressionNode) {
+            return evaluator((ExpressionNode) node);
+        }
+        return new Fail("Don't know how to evaluate expression " + node);
+    }
+
+    private static final class Fail extends Evaluator {
+        private final String message;
+
+        Fail(final String message) {
+            this.message = message;
+        }
+
+        @Override
+        Value evaluate() {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static final class Literal extends Evaluator {
+        private final Value value;
+
+        Literal(final Value value) {
+            this.value = value;
+        }
+
+        @Override
+        Value evaluate() {
+            return value;
+        }
+    }
+
+    private class Variable extends Evaluator {
+        private final Symbol name;
+        private final Interpreter.Binding binding;
+
+        Variable(final Symbol name) {
+            this.name = name;
+            this.binding = interpreter.binding(name);
+        }
+
+        @Override
+        Value evaluate() {
+            Value value = binding.value;
+            if (value == null) {
+                throw new IllegalStateException("Could not resolve variable " + name);
+            }
+            return value;
+        }
+    }
+
+    private static final class ExpressionList extends Evaluator {
+        private final Evaluator[] expressions;
+
+        ExpressionList(final Evaluator[] expressions) {
+            this.expressions = expressions;
+            for (Evaluator expression : expressions) {
+                adopt(expression);
+            }
+        }
+
+        @Override
+        Value evaluate() {
+            Value result = null;
+            for (Evaluator expression : expressions) {
+                result = expression.evaluate();
+            }
+            return result;
+        }
+
+        @Override
+        void replaceChild(final Evaluator child, final Evaluator replacement) {
+            for (int i = 0; i < expressions.length; i++) {
+                if (expressions[i] == child) {
+                    expressions[i] = replacement;
+                }
+            }
+        }
+    }
+
+    private Evaluator binaryOperator(final BinaryOpNode binaryOp) {
+        if (binaryOp instanceof AssignmentNode) {
+            if (!(binaryOp.getLhs() instanceof IdentifierNode)) {
+                return new Fail("The left hand side of an assignment must be an identifier in expression " + binaryOp);
+            }
+            return new Assignment(((IdentifierNode) binaryOp.getLhs()).getSymbol(), evaluator(binaryOp.getRhs()));
+        }
+        int operator;
+        if (binaryOp instanceof PlusNode) {
+            operator = ADDITION;
+        } else if (binaryOp instanceof MinusNode) {
+            operator = SUBTRACTION;
+        } else if (binaryOp instanceof MultiplyNode) {
+            operator = MULTIPLICATION;
+        } else if (binaryOp instanceof DivideNode) {
+            operator = DIVISION;
+        } else {
+            return new Fail("Don't know \nhow to evaluate binary operator " + binaryOp.getClass().getSimpleName() + " in expression " + binaryOp);
+        }
+        return new UninitializedBinaryOperator(operator, evaluator(binaryOp.getLhs()), evaluator(binaryOp.getRhs()));
+    }
+
+    private class Assignment extends Evaluator {
+        private final Symbol name;
+        private final Interpreter.Binding binding;
+        private Evaluator rhs;
+
+        Assignment(final Symbol name, final Evaluator rhs) {
+            this.name = name;
+            this.binding = interpreter.binding(name);
+            this.rhs = adopt(rhs);
+        }
+
+        @Override
+        Value evaluate() {
+            Value value = rhs.evaluate();
+            if (value.isFunction()) {
+                return xl.assign(name, value);
+            }
+            binding.value = value;
+            return value;
+        }
+
+        @Override
+        void replaceChild(final Evaluator child, final Evaluator replacement) {
+            rhs = replacement;
+        }
+    }
+
+    /**
+     * The operands and operator shared by each state of a binary operator node.
+     */
+    private abstract class BinaryOperator extends Evaluator {
+        final int operator;
+        Evaluator left;
+        Evaluator right;
+
+        BinaryOperator(final int operator, final Evaluator left, final Evaluator right) {
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        final void replaceChild(final Evaluator child, final Evaluator replacement) {
+            if (left == child) {
+                left = replacement;
+            } else if (right == child) {
+                right = replacement;
+            }
+        }
+
+        final Value generic(final Value l, final Value r) {
+            return replace(new GenericBinaryOperator(operator, left, right)).apply(l, r);
+        }
+    }
+
+    private class UninitializedBinaryOperator extends BinaryOperator {
+        UninitializedBinaryOperator(final int operator, final Evaluator left, final Evaluator right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Value evaluate() {
+            Value l = left.evaluate();
+            Value r = right.evaluate();
+            if (l.getType() == number && r.getType() == number && operators.builtIn(operator)) {
+                return replace(new NumberBinaryOperator(operator, left, right)).apply(l, r);
+            }
+            return generic(l, r);
+        }
+    }
+
+    private class NumberBinaryOperator extends BinaryOperator {
+        NumberBinaryOperator(final int operator, final Evaluator left, final Evaluator right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Value evaluate() {
+            Value l = left.evaluate();
+            Value r = right.evaluate();
+            if (l.getType() != number || r.getType() != number || !operators.builtIn(operator)) {
+                return generic(l, r);
+            }
+            return apply(l, r);
+        }
+
+        Value apply(final Value l, final Value r) {
+            long left = l.longValue();
+            long right = r.longValue();
+            switch (operator) {
+            case ADDITION:
+                return xl.number(left + right);
+            case SUBTRACTION:
+                return xl.number(left - right);
+            case MULTIPLICATION:
+                return xl.number(left * right);
+            default:
+                return xl.number(left / right);
+            }
+        }
+    }
+
+    private class GenericBinaryOperator extends BinaryOperator {
+        GenericBinaryOperator(final int operator, final Evaluator left, final Evaluator right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Value evaluate() {
+            return apply(left.evaluate(), right.evaluate());
+        }
+
+        // the built-in functions check the operand types, and report operands that are not numbers
+        Value apply(final Value l, final Value r) {
+            return interpreter.callFunction(operators.function(operator), List.of(r, l));
+        }
+    }
+
+    private Evaluator unaryOperator(final UnaryOpNode unaryOp) {
+        int operator;
+        if (unaryOp instanceof NegativeSignedNode) {
+            operator = NEGATION;
+        } else if (unaryOp instanceof PositiveSignedNode) {
+            operator = IDENTITY;
+        } else if (unaryOp instanceof PreIncrementNode) {
+            operator = PRE_INCREMENT;
+        } else if (unaryOp instanceof PreDecrementNode) {
+            operator = PRE_DECREMENT;
+        } else if (unaryOp instanceof PostIncrementNode) {
+            operator = POST_INCREMENT;
+        } else if (unaryOp instanceof PostDecrementNode) {
+            operator = POST_DECREMENT;
+        } else {
+            return new Fail("Unknown unary operator " + unaryOp + " in expression " + unaryOp);
+        }
+        return new UninitializedUnaryOperator(operator, unaryOp, evaluator(unaryOp.getExpr()));
+    }
+
+    /**
+     * The operand and operator shared by each state of a unary operator node.
+     */
+    private abstract class UnaryOperator extends Evaluator {
+        final int operator;
+        final UnaryOpNode unaryOp;
+        // the variable an increment or decrement is assigned to, if the operand is one
+        final Interpreter.Binding binding;
+        Evaluator operand;
+
+        UnaryOperator(final int operator, final UnaryOpNode unaryOp, final Evaluator operand) {
+            this.operator = operator;
+            this.unaryOp = unaryOp;
+            this.binding = unaryOp.getExpr() instanceof IdentifierNode ? interpreter.binding(((IdentifierNode) unaryOp.getExpr()).getSymbol()) : null;
+            this.operand = adopt(operand);
+        }
+
+        @Override
+        final void replaceChild(final Evaluator child, final Evaluator replacement) {
+            operand = replacement;
+        }
+
+        final boolean builtIn() {
+            return operator < 0 || operators.builtIn(operator);
+        }
+
+        // the value of an increment or decrement, given the operand and the result of its function
+        final Value assign(final Value value, final Value result) {
+            if (binding != null) {
+                binding.value = result;
+            }
+            return operator == POST_INCREMENT || operator == POST_DECREMENT ? value : result;
+        }
+
+        final Value generic(final Value value) {
+            return replace(new GenericUnaryOperator(operator, unaryOp, operand)).apply(value);
+        }
+    }
+
+    private class UninitializedUnaryOperator extends UnaryOperator {
+        UninitializedUnaryOperator(final int operator, final UnaryOpNode unaryOp, final Evaluator operand) {
+            super(operator, unaryOp, operand);
+        }
+
+        @Override
+        Value evaluate() {
+            Value value = operand.evaluate();
+            if (value.getType() == number && builtIn()) {
+                return replace(new NumberUnaryOperator(operator, unaryOp, operand)).apply(value);
+            }
+            return generic(value);
+        }
+    }
+
+    private class NumberUnaryOperator extends UnaryOperator {
+        NumberUnaryOperator(final int operator, final UnaryOpNode unaryOp, final Evaluator operand) {
+            super(operator, unaryOp, operand);
+        }
+
+        @Override
+        Value evaluate() {
+            Value value = operand.evaluate();
+            if (value.getType() != number || !builtIn()) {
+                return generic(value);
+            }
+            return apply(value);
+        }
+
+        Value apply(final Value value) {
+            switch (operator) {
+            case NEGATION:
+                return xl.number(-value.longValue());
+            case IDENTITY:
+                return xl.positive(value);
+            case PRE_INCREMENT:
+            case POST_INCREMENT:
+                return assign(value, xl.number(value.longValue() + 1));
+            default:
+                return assign(value, xl.number(value.longValue() - 1));
+            }
+        }
+    }
+
+    private class GenericUnaryOperator extends UnaryOperator {
+        GenericUnaryOperator(final int operator, final UnaryOpNode unaryOp, final Evaluator operand) {
+            super(operator, unaryOp, operand);
+        }
+
+        @Override
+        Value evaluate() {
+            return apply(operand.evaluate());
+        }
+
+        Value apply(final Value value) {
+            xl.checkType(value.getType(), number, UNARY_OPERAND_ERROR + unaryOp);
+            if (operator == NEGATION) {
+                return xl.number(-value.longValue());
+            } else if (operator == IDENTITY) {
+                return xl.positive(value);
+            }
+            return assign(value, interpreter.callFunction(operators.function(operator), List.of(value)));
+        }
+    }
+
+    private Evaluator functionDeclaration(final FunctionDeclarationNode functionDeclaration) {
+        return new FunctionDeclaration(functionDeclaration, new SpecializedFunction(compile(functionDeclaration.getBody())));
+    }
+
+    private class FunctionDeclaration extends Evaluator {
+        private final FunctionDeclarationNode functionDeclaration;
+        private final SpecializedFunction implementation;
+
+        FunctionDeclaration(final FunctionDeclarationNode functionDeclaration, final SpecializedFunction implementation) {
+            this.functionDeclaration = functionDeclaration;
+            this.implementation = implementation;
+        }
+
+        @Override
+        Value evaluate() {
+            return xl.declareFunction(functionDeclaration, implementation);
+        }
+    }
+
+    /**
+     * A function declared by the specializing engine; its body keeps the specializations of earlier calls.
+     */
+    class SpecializedFunction implements FunctionImplementation {
+        final Root body;
+
+        SpecializedFunction(final Root body) {
+            this.body = body;
+        }
+
+        @Override
+        public Value invoke(final FunctionSignature signature, final Stack<Value> stack) {
+            xl.bindParameters(signature, stack);
+            return body.evaluate();
+        }
+    }
+
+    private Evaluator functionCall(final FunctionCallNode functionCall) {
+        Node arguments = functionCall.getArguments();
+        if (arguments instanceof ArgumentListNode) {
+            ArgumentListNode argumentList = (ArgumentListNode) arguments;
+            Evaluator[] evaluators = new Evaluator[argumentList.size()];
+            for (int i = 0; i < evaluators.length; i++) {
+                evaluators[i] = evaluator(argumentList.get(i));
+            }
+            return new UninitializedFunctionCall(functionCall.getSymbol(), evaluators, true);
+        } else if (arguments instanceof EmptyNode) {
+            return new UninitializedFunctionCall(functionCall.getSymbol(), new Evaluator[0], false);
+        }
+        return new UninitializedFunctionCall(functionCall.getSymbol(), new Evaluator[] { evaluator(arguments) }, false);
+    }
+
+    /**
+     * The call site and arguments shared by each state of a call node.
+     */
+    private abstract class FunctionCall extends Evaluator {
+        final CallSite callSite;
+        final Evaluator[] arguments;
+
+        FunctionCall(final CallSite callSite, final Evaluator[] arguments) {
+            this.callSite = callSite;
+            this.arguments = arguments;
+            for (Evaluator argument : arguments) {
+                adopt(argument);
+            }
+        }
+
+        @Override
+        final void replaceChild(final Evaluator child, final Evaluator replacement) {
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] == child) {
+                    arguments[i] = replacement;
+                }
+            }
+        }
+
+        final Value[] evaluateArguments() {
+            Value[] values = new Value[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].evaluate();
+            }
+            return values;
+        }
+    }
+
+    private class UninitializedFunctionCall extends FunctionCall {
+        UninitializedFunctionCall(final Symbol name, final Evaluator[] arguments, final boolean list) {
+            super(new CallSite(interpreter, name, list), arguments);
+        }
+
+        @Override
+        Value evaluate() {
+            Value[] values = evaluateArguments();
+            Function function = callSite.target(values);
+            replace(new CachedFunctionCall(callSite, arguments));
+            return interpreter.callFunction(function, values);
+        }
+    }
+
+    private class CachedFunctionCall extends FunctionCall {
+        CachedFunctionCall(final CallSite callSite, final Evaluator[] arguments) {
+            super(callSite, arguments);
+        }
+
+        @Override
+        Value evaluate() {
+            Value[] values = evaluateArguments();
+            if (!callSite.sameTypes(values)) {
+                return replace(new GenericFunctionCall(callSite, arguments)).call(values);
+            }
+            return interpreter.callFunction(callSite.target(values), values);
+        }
+    }
+
+    private class GenericFunctionCall extends FunctionCall {
+        GenericFunctionCall(final CallSite callSite, final Evaluator[] arguments) {
+            super(callSite, arguments);
+        }
+
+        @Override
+        Value evaluate() {
+            return call(evaluateArguments());
+        }
+
+        Value call(final Value[] values) {
+            return interpreter.callFunction(callSite.lookUp(values), values);
+        }
+    }
+}
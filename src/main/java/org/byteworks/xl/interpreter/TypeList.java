@@ -14,6 +14,19 @@ public class TypeList implements Type {
         name = types.stream().map(Type::name).collect(Collectors.joining(", "));
     }
 
+    // whether the values have these types, which is what equals compares by name
+    boolean matches(final Value[] values) {
+        if (values.length != types.size()) {
+            return false;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!types.get(i).equals(values[i].getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String name() {
         return name;
@@ -17,6 +17,18 @@ public class Value {
         return type;
     }
 
+    /**
+     * The number this value holds, without boxing it if it is a {@link NumberValue}.
+     */
+    public long longValue() {
+        return (Long) value;
+    }
+
+    // whether this is a function, which is asked of every value assigned, so must not box a number to find out
+    boolean isFunction() {
+        return value instanceof Function;
+    }
+
     @Override
     public String toString() {
         return value.toString() + ": " + type;
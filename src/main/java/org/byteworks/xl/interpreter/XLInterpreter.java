@@ -1,5 +1,6 @@
 package org.byteworks.xl.interpreter;
 
+import org.byteworks.lexer.Symbol;
 import org.byteworks.parser.Node;
 import org.byteworks.xl.interpreter.Function;
 import org.byteworks.xl.interpreter.FunctionImplementation;
@@ -10,9 +11,10 @@ import org.byteworks.xl.interpreter.SimpleType;
 import org.byteworks.xl.interpreter.Type;
 import org.byteworks.xl.interpreter.TypeList;
 import org.byteworks.xl.interpreter.Value;
+import org.byteworks.xl.parser.FlatAst;
+import org.byteworks.xl.parser.node.ArgumentListNode;
 import org.byteworks.xl.parser.node.AssignmentNode;
 import org.byteworks.xl.parser.node.BinaryOpNode;
-import org.byteworks.xl.parser.node.CommaNode;
 import org.byteworks.xl.parser.node.DivideNode;
 import org.byteworks.xl.parser.node.EmptyNode;
 import org.byteworks.xl.parser.node.ExpressionListNode;
@@ -36,16 +38,75 @@ import org.byteworks.xl.parser.node.UnaryOpNode;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 public class XLInterpreter {
-    private static final String TYPE_NUMBER = "Number";
-    private static final String TYPE_UNIT = "Unit";
+    static final String TYPE_NUMBER = "Number";
+    static final String TYPE_UNIT = "Unit";
+    static final Symbol ADD = Symbol.intern("add");
+    static final Symbol SUBTRACT = Symbol.intern("subtract");
+    static final Symbol MULTIPLY = Symbol.intern("multiply");
+    static final Symbol DIVIDE = Symbol.intern("divide");
+    static final Symbol PRE_INCREMENT = Symbol.intern("preincrement");
+    static final Symbol PRE_DECREMENT = Symbol.intern("predecrement");
+    static final Symbol POST_INCREMENT = Symbol.intern("postincrement");
+    static final Symbol POST_DECREMENT = Symbol.intern("postdecrement");
+    static final String UNARY_OPERAND_ERROR = "Unary operator expected a %s but got %s in expression ";
+
+    /**
+     * How statements are executed. Flattened trees are always interpreted directly, whichever engine is chosen.
+     */
+    public enum Engine {
+        /**
+         * Walk the node objects of each statement every time it is evaluated.
+         */
+        TREE,
+        /**
+         * Compile each statement and function body into a tree of closures, with what they use already looked up.
+         */
+        CLOSURE,
+        /**
+         * Compile each statement and function body into a tree of nodes that specialize themselves to the types they
+         * see.
+         */
+        SPECIALIZING,
+        /**
+         * Compile each statement to a {@link Program} and run it on a stack machine.
+         */
+        BYTECODE
+    }
+
+    /**
+     * When functions declared by the {@link Engine#TREE} engine are compiled to JVM classes, which are never unloaded.
+     * The default, INTERPRETED unless the system property org.byteworks.xl.tier says otherwise, compiles nothing; the
+     * number of calls after which ADAPTIVE compiles a function is set by org.byteworks.xl.jit.threshold.
+     */
+    public enum Tier {
+        /**
+         * Never; always walk the function body.
+         */
+        INTERPRETED,
+        /**
+         * Once a function has been called {@link #JIT_THRESHOLD} times.
+         */
+        ADAPTIVE,
+        /**
+         * Before a function is first called.
+         */
+        COMPILED
+    }
+
+    public static final int JIT_THRESHOLD = Integer.getInteger("org.byteworks.xl.jit.threshold", 1000);
+    private static final Tier DEFAULT_TIER = Tier.valueOf(System.getProperty("org.byteworks.xl.tier", Tier.INTERPRETED.name()).toUpperCase(Locale.ROOT));
 
     class InterpretedFunction implements FunctionImplementation {
-        private final ExpressionNode expression;
+        final ExpressionNode expression;
 
         InterpretedFunction(final ExpressionNode expression) {
             this.expression = expression;
@@ -53,83 +114,134 @@ public class XLInterpreter {
 
         @Override
         public Value invoke(final FunctionSignature signature, final Stack<Value> stack) {
-            final List<FunctionParameter> parameters = signature.getFunctionParameters();
-            for (FunctionParameter param : parameters) {
-                Value value = stack.pop();
-                checkType(value.getType(), param.getType(), "Parameter " + param.getName() + " requires a " + param.getType() + " but a " + value.getType() + " was supplied");
-                interpreter.assignVariableValue(param.getName(), value);
-            }
+            bindParameters(signature, stack);
             return evaluateExpression(expression);
         }
     }
 
+    class FlatInterpretedFunction implements FunctionImplementation {
+        private final FlatAst ast;
+        private final Value[] literalValues;
+        private final int expression;
+
+        FlatInterpretedFunction(final FlatAst ast, final Value[] literalValues, final int expression) {
+            this.ast = ast;
+            this.literalValues = literalValues;
+            this.expression = expression;
+        }
+
+        @Override
+        public Value invoke(final FunctionSignature signature, final Stack<Value> stack) {
+            bindParameters(signature, stack);
+            return evaluate(ast, literalValues, expression);
+        }
+    }
+
     final Interpreter interpreter = new Interpreter();
 
-    private final FunctionImplementation numericAddition = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long leftValue = popValue(stack, number, "binary addition left operand expected %s but got %s");
-        Long rightValue = popValue(stack, number, "binary addition right operand expected %s but got %s");
-        return new Value(leftValue + rightValue, interpreter.getType(TYPE_NUMBER));
+    // the literals of each flattened tree, boxed once; per interpreter, since a Value carries this interpreter's Types
+    private final Map<FlatAst, Value[]> flatLiterals = new WeakHashMap<>();
+
+    // the shared values of the numbers from SMALL_NUMBER_MIN to SMALL_NUMBER_MAX, made when first needed
+    private static final int SMALL_NUMBER_MIN = -128;
+    private static final int SMALL_NUMBER_MAX = 1023;
+    private final Value[] smallNumbers = new Value[SMALL_NUMBER_MAX - SMALL_NUMBER_MIN + 1];
+    private final Type numberType;
+
+    final FunctionImplementation numericAddition = (signature, stack) -> {
+        long leftValue = popNumber(stack, "binary addition left operand expected %s but got %s");
+        long rightValue = popNumber(stack, "binary addition right operand expected %s but got %s");
+        return number(leftValue + rightValue);
     };
-    private final FunctionImplementation numericSubtraction = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long leftValue = popValue(stack, number, "binary subtraction left operand expected %s but got %s");
-        Long rightValue = popValue(stack, number, "binary subtraction right operand expected %s but got %s");
-        return new Value(leftValue - rightValue, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation numericSubtraction = (signature, stack) -> {
+        long leftValue = popNumber(stack, "binary subtraction left operand expected %s but got %s");
+        long rightValue = popNumber(stack, "binary subtraction right operand expected %s but got %s");
+        return number(leftValue - rightValue);
     };
-    private final FunctionImplementation numericMultiplication = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long leftValue = popValue(stack, number, "binary multiplication left operand expected %s but got %s");
-        Long rightValue = popValue(stack, number, "binary multiplication right operand expected %s but got %s");
-        return new Value(leftValue * rightValue, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation numericMultiplication = (signature, stack) -> {
+        long leftValue = popNumber(stack, "binary multiplication left operand expected %s but got %s");
+        long rightValue = popNumber(stack, "binary multiplication right operand expected %s but got %s");
+        return number(leftValue * rightValue);
     };
-    private final FunctionImplementation numericDivision = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long leftValue = popValue(stack, number, "binary division left operand expected %s but got %s");
-        Long rightValue = popValue(stack, number, "binary division right operand expected %s but got %s");
-        return new Value(leftValue / rightValue, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation numericDivision = (signature, stack) -> {
+        long leftValue = popNumber(stack, "binary division left operand expected %s but got %s");
+        long rightValue = popNumber(stack, "binary division right operand expected %s but got %s");
+        return number(leftValue / rightValue);
     };
-    private final FunctionImplementation preIncrement = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long operand = popValue(stack, number, "pre-increment operand expected %s but got %s");
-        return new Value(operand + 1, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation preIncrement = (signature, stack) -> {
+        long operand = popNumber(stack, "pre-increment operand expected %s but got %s");
+        return number(operand + 1);
     };
-    private final FunctionImplementation preDecrement = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long operand = popValue(stack, number, "pre-decrement operand expected %s but got %s");
-        return new Value(operand - 1, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation preDecrement = (signature, stack) -> {
+        long operand = popNumber(stack, "pre-decrement operand expected %s but got %s");
+        return number(operand - 1);
     };
-    private final FunctionImplementation postIncrement = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long operand = popValue(stack, number, "post-increment operand expected %s but got %s");
-        return new Value(operand + 1, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation postIncrement = (signature, stack) -> {
+        long operand = popNumber(stack, "post-increment operand expected %s but got %s");
+        return number(operand + 1);
     };
-    private final FunctionImplementation postDecrement = (signature, stack) -> {
-        Type number = interpreter.getType(TYPE_NUMBER);
-        Long operand = popValue(stack, number, "post-decrement operand expected %s but got %s");
-        return new Value(operand - 1, interpreter.getType(TYPE_NUMBER));
+    final FunctionImplementation postDecrement = (signature, stack) -> {
+        long operand = popNumber(stack, "post-decrement operand expected %s but got %s");
+        return number(operand - 1);
     };
 
+    final Operators operators;
+    private final Engine engine;
+    private final ClosureCompiler closureCompiler;
+    private final SpecializingCompiler specializingCompiler;
+    private final BytecodeVM vm;
+
     public XLInterpreter() {
+        this(Engine.TREE);
+    }
+
+    public XLInterpreter(final Engine engine) {
+        this(engine, DEFAULT_TIER);
+    }
+
+    public XLInterpreter(final Engine engine, final Tier tier) {
+        this.engine = engine;
         Type number = new SimpleType(TYPE_NUMBER);
         interpreter.registerType(TYPE_NUMBER, new SimpleType(TYPE_NUMBER));
         interpreter.registerType(TYPE_UNIT, new SimpleType(TYPE_UNIT));
         List<FunctionParameter> twoNumbers = List.of(new FunctionParameter("x", interpreter.getType(TYPE_NUMBER)), new FunctionParameter("y", interpreter.getType(TYPE_NUMBER)));
         List<FunctionParameter> oneNumber = List.of(new FunctionParameter("x", interpreter.getType(TYPE_NUMBER)));
         TypeList twoNumbersType = new TypeList(List.of(number, number));
-        interpreter.registerFunction("add", twoNumbers, twoNumbersType, number, numericAddition);
-        interpreter.registerFunction("subtract", twoNumbers, twoNumbersType, number, numericSubtraction);
-        interpreter.registerFunction("multiply", twoNumbers, twoNumbersType, number, numericMultiplication);
-        interpreter.registerFunction("divide", twoNumbers, twoNumbersType, number, numericDivision);
-        interpreter.registerFunction("preincrement", oneNumber, number, number, preIncrement);
-        interpreter.registerFunction("predecrement", oneNumber, number, number, preDecrement);
-        interpreter.registerFunction("postincrement", oneNumber, number, number, postIncrement);
-        interpreter.registerFunction("postdecrement", oneNumber, number, number, postDecrement);
+        interpreter.registerFunction(ADD, twoNumbers, twoNumbersType, number, numericAddition);
+        interpreter.registerFunction(SUBTRACT, twoNumbers, twoNumbersType, number, numericSubtraction);
+        interpreter.registerFunction(MULTIPLY, twoNumbers, twoNumbersType, number, numericMultiplication);
+        interpreter.registerFunction(DIVIDE, twoNumbers, twoNumbersType, number, numericDivision);
+        interpreter.registerFunction(PRE_INCREMENT, oneNumber, number, number, preIncrement);
+        interpreter.registerFunction(PRE_DECREMENT, oneNumber, number, number, preDecrement);
+        interpreter.registerFunction(POST_INCREMENT, oneNumber, number, number, postIncrement);
+        interpreter.registerFunction(POST_DECREMENT, oneNumber, number, number, postDecrement);
+        this.numberType = interpreter.getType(TYPE_NUMBER);
+        this.operators = new Operators(this);
+        this.closureCompiler = engine == Engine.CLOSURE ? new ClosureCompiler(this) : null;
+        this.specializingCompiler = engine == Engine.SPECIALIZING ? new SpecializingCompiler(this) : null;
+        this.vm = new BytecodeVM(this);
+        if (tier != Tier.INTERPRETED) {
+            interpreter.setCompiler(new JitCompiler(this), tier == Tier.COMPILED ? 0 : JIT_THRESHOLD);
+        }
     }
 
     public void exec(List<Node> nodes, PrintStream ps) {
-        for (Node node : nodes) {
-            if (node instanceof ExpressionNode) {
+        exec(nodes.iterator(), ps);
+    }
+
+    /**
+     * Execute statements as they are produced, e.g. by {@link org.byteworks.parser.Parser#statements()}.
+     */
+    public void exec(Iterator<? extends Node> statements, PrintStream ps) {
+        while (statements.hasNext()) {
+            Node node = statements.next();
+            if (node instanceof ExpressionNode && engine == Engine.CLOSURE) {
+                ps.println(closureCompiler.compile((ExpressionNode) node).evaluate());
+            } else if (node instanceof ExpressionNode && engine == Engine.SPECIALIZING) {
+                ps.println(specializingCompiler.compile((ExpressionNode) node).evaluate());
+            } else if (node instanceof ExpressionNode && engine == Engine.BYTECODE) {
+                ps.println(vm.executeOnce(Program.compile(List.of(node))));
+            } else if (node instanceof ExpressionNode) {
                 ps.println(evaluateExpression((ExpressionNode) node));
             } else {
                 ps.println(node);
@@ -137,7 +249,36 @@ public class XLInterpreter {
         }
     }
 
-    private Value evaluateExpression(final ExpressionNode expression) {
+    /**
+     * Execute a flattened tree. Gives the same output as executing the node objects it was built from.
+     */
+    public void exec(FlatAst ast, PrintStream ps) {
+        Value[] literalValues = flatLiterals.computeIfAbsent(ast, it -> new Value[it.literalCount()]);
+        for (int i = 0; i < ast.statementCount(); i++) {
+            int statement = ast.statement(i);
+            if (ast.kind(statement) == FlatAst.EMPTY) {
+                ps.println(ast.toString(statement));
+            } else {
+                ps.println(evaluate(ast, literalValues, statement));
+            }
+        }
+    }
+
+    /**
+     * Execute a compiled program, whichever engine this interpreter was created with.
+     */
+    public void exec(Program program, PrintStream ps) {
+        for (int i = 0; i < program.statementCount(); i++) {
+            int statement = program.statements[i];
+            if (statement < 0) {
+                ps.println(program.texts[~statement]);
+            } else {
+                ps.println(vm.execute(program, i));
+            }
+        }
+    }
+
+    Value evaluateExpression(final ExpressionNode expression) {
         if (expression instanceof LiteralNode) {
             return literalExpression((LiteralNode) expression);
         } else if (expression instanceof IdentifierNode) {
@@ -165,56 +306,50 @@ public class XLInterpreter {
     }
 
     private Value callFunction(final FunctionCallNode functionCall) {
-        String functionName = functionCall.getName();
+        Symbol functionName = functionCall.getSymbol();
         Type parameterType;
-        List<Value> arguments = new ArrayList<>();
-        if (functionCall.getArguments() instanceof CommaNode) {
-            List<ExpressionNode> argumentExpressions = flatten((CommaNode) functionCall.getArguments());
-            for (ExpressionNode argumentExpression: argumentExpressions) {
-                arguments.add(evaluateExpression(argumentExpression));
+        List<Value> arguments;
+        if (functionCall.getArguments() instanceof ArgumentListNode) {
+            ArgumentListNode argumentList = (ArgumentListNode) functionCall.getArguments();
+            Value[] values = new Value[argumentList.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = evaluateExpression((ExpressionNode) argumentList.get(i));
             }
-            parameterType = new TypeList(arguments.stream().map(Value::getType).collect(Collectors.toList()));
+            return interpreter.callFunction(interpreter.getFunction(functionName, values), values);
         } else if (functionCall.getArguments() instanceof EmptyNode) {
+            arguments = List.of();
             parameterType = interpreter.getType(TYPE_UNIT);
         } else {
             Value argument = evaluateExpression((ExpressionNode) functionCall.getArguments());
-            arguments.add(argument);
+            arguments = List.of(argument);
             parameterType = argument.getType();
         }
         Function function = interpreter.getFunction(functionName, parameterType);
         return interpreter.callFunction(function, arguments);
     }
 
-    private List<ExpressionNode> flatten(CommaNode arguments) {
-        List<ExpressionNode> result = new ArrayList<>();
-        ExpressionNode left = (ExpressionNode) arguments.getLeft();
-        ExpressionNode right = (ExpressionNode) arguments.getRight();
-        if (left instanceof CommaNode) {
-            result.addAll(flatten((CommaNode)left));
-        } else {
-            result.add(left);
-        }
-        if (right instanceof CommaNode) {
-            result.addAll(flatten((CommaNode)right));
-        } else {
-            result.add(right);
-        }
-        return result;
+    private Value functionDeclaration(FunctionDeclarationNode functionDeclaration) {
+        return declareFunction(functionDeclaration, new InterpretedFunction(functionDeclaration.getBody()));
     }
 
-    private Value functionDeclaration(FunctionDeclarationNode functionDeclaration) {
+    // declares the function with the declaration's signature, whichever way its engine runs the body
+    Value declareFunction(FunctionDeclarationNode functionDeclaration, FunctionImplementation implementation) {
         FunctionSignatureNode functionSignature = functionDeclaration.getFunctionSignature();
         final List<TypeExpressionNode> parameterTypes = functionSignature.getParameterTypes();
         List<FunctionParameter> functionParameters =
-                parameterTypes.stream().map(it -> new FunctionParameter(it.getTarget().getChars(), interpreter.getType(it.getTypeExpression().getChars()))).collect(Collectors.toList());
-        final List<IdentifierNode> returnTypes = functionSignature.getReturnTypes();
+                parameterTypes.stream().map(it -> new FunctionParameter(it.getTarget().getSymbol(), interpreter.getType(it.getTypeExpression().getChars()))).collect(Collectors.toList());
+        List<String> returnTypes = functionSignature.getReturnTypes().stream().map(IdentifierNode::getChars).collect(Collectors.toList());
+        return declareFunction(functionParameters, returnTypes, implementation);
+    }
+
+    Value declareFunction(List<FunctionParameter> functionParameters, List<String> returnTypes, FunctionImplementation implementation) {
         Type returnType;
         if (returnTypes.size() == 0) {
             returnType = interpreter.getType(TYPE_UNIT);
         } else if (returnTypes.size() == 1) {
-            returnType = new SimpleType(returnTypes.get(0).getChars());
+            returnType = new SimpleType(returnTypes.get(0));
         } else {
-            returnType = new TypeList(returnTypes.stream().map(it -> interpreter.getType(it.getChars())).collect(Collectors.toList()));
+            returnType = new TypeList(returnTypes.stream().map(interpreter::getType).collect(Collectors.toList()));
         }
         Type parameterType;
         if (functionParameters.size() == 0) {
@@ -224,7 +359,7 @@ public class XLInterpreter {
         } else {
             parameterType = new TypeList(functionParameters.stream().map(FunctionParameter::getType).collect(Collectors.toList()));
         }
-        Function function = new Function(new FunctionSignature(functionParameters, parameterType, returnType), new InterpretedFunction(functionDeclaration.getBody()));
+        Function function = new Function(new FunctionSignature(functionParameters, parameterType, returnType), implementation);
         return new Value(function, function.getSignature().getParameterType());
     }
 
@@ -232,53 +367,90 @@ public class XLInterpreter {
         ExpressionNode lhs = binaryOp.getLhs();
         ExpressionNode rhs = binaryOp.getRhs();
         if (binaryOp instanceof AssignmentNode) {
-            return callAssignment(binaryOp, (IdentifierNode) lhs, rhs);
+            if (!(lhs instanceof IdentifierNode)) {
+                throw new IllegalStateException("The left hand side of an assignment must be an identifier in expression " + binaryOp);
+            }
+            return callAssignment((IdentifierNode) lhs, rhs);
         }
         Value left = evaluateExpression(lhs);
         Value right = evaluateExpression(rhs);
         if (binaryOp instanceof PlusNode) {
-            return callBinaryNumericFunction(left, right, "add");
+            return callBinaryNumericFunction(left, right, ADD);
         } else if (binaryOp instanceof MinusNode) {
-            return callBinaryNumericFunction(left, right, "subtract");
+            return callBinaryNumericFunction(left, right, SUBTRACT);
         } else if (binaryOp instanceof MultiplyNode) {
-            return callBinaryNumericFunction(left, right, "multiply");
+            return callBinaryNumericFunction(left, right, MULTIPLY);
         } else if (binaryOp instanceof DivideNode) {
-            return callBinaryNumericFunction(left, right, "divide");
+            return callBinaryNumericFunction(left, right, DIVIDE);
         } else {
             throw new IllegalStateException("Don't know \nhow to evaluate binary operator " + binaryOp.getClass().getSimpleName() + " in expression " + binaryOp);
         }
     }
 
-    private Value callAssignment(final BinaryOpNode binaryOp, final IdentifierNode identifierNode, final ExpressionNode rhs) {
-        if (!(binaryOp.getLhs() instanceof IdentifierNode)) {
-            throw new IllegalStateException("The left hand side of an assignment must be an identifier in expression " + binaryOp);
-        }
-        Value value = evaluateExpression(rhs);
-        if (value.getValue() instanceof Function) {
+    private Value callAssignment(final IdentifierNode identifierNode, final ExpressionNode rhs) {
+        return assign(identifierNode.getSymbol(), evaluateExpression(rhs));
+    }
+
+    Value assign(final Symbol name, Value value) {
+        if (value.isFunction()) {
             Function function = (Function) value.getValue();
-            String functionName = identifierNode.getChars();
             FunctionSignature signature = function.getSignature();
-            value = new Value(interpreter.registerFunction(functionName, function.getSignature().getFunctionParameters(), signature.getParameterType(), signature.getReturnType(), function.getImpl()),
+            value = new Value(interpreter.registerFunction(name, function.getSignature().getFunctionParameters(), signature.getParameterType(), signature.getReturnType(), function.getImpl()),
                     function.getSignature().getParameterType());
         }
-        interpreter.assignVariableValue(identifierNode.getChars(), value);
+        interpreter.assignVariableValue(name, value);
         return value;
     }
 
-    private Value callBinaryNumericFunction(final Value left, final Value right, final String name) {
+    private Value callBinaryNumericFunction(final Value left, final Value right, final Symbol name) {
         Type num = interpreter.getType(TYPE_NUMBER);
         Type binaryFunctionParameterType = new TypeList(List.of(num, num));
         Function fn = interpreter.getFunction(name, binaryFunctionParameterType);
         return interpreter.callFunction(fn, List.of(right, left));
     }
 
-    private Value callUnaryNumericFunction(final Value arg, final String name) {
+    /**
+     * The value of a number, shared if the number is small.
+     */
+    Value number(final long value) {
+        if (value < SMALL_NUMBER_MIN || value > SMALL_NUMBER_MAX) {
+            return new NumberValue(value, numberType);
+        }
+        int index = (int) value - SMALL_NUMBER_MIN;
+        Value number = smallNumbers[index];
+        if (number == null) {
+            number = new NumberValue(value, numberType);
+            smallNumbers[index] = number;
+        }
+        return number;
+    }
+
+    // the value of +operand, for an operand that has been checked to be a Number; a function assigned to a variable
+    // can have that type too, and stays a function
+    Value positive(final Value operand) {
+        return operand.isFunction() ? new Value(operand.getValue(), numberType) : number(operand.longValue());
+    }
+
+    private Value callUnaryNumericFunction(final Value arg, final Symbol name) {
         Type num = interpreter.getType(TYPE_NUMBER);
         Function fn = interpreter.getFunction(name, num);
         return interpreter.callFunction(fn, List.of(arg));
     }
 
-    private void checkType(Type type, Type expected, String error) {
+    void bindParameters(final FunctionSignature signature, final Stack<Value> stack) {
+        final List<FunctionParameter> parameters = signature.getFunctionParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            FunctionParameter param = parameters.get(i);
+            Value value = stack.pop();
+            // the message is only built for a mismatch, since this runs for every argument of every call
+            if (!param.getType().equals(value.getType())) {
+                checkType(value.getType(), param.getType(), "Parameter " + param.getName() + " requires a " + param.getType() + " but a " + value.getType() + " was supplied");
+            }
+            interpreter.assignVariableValue(param.getSymbol(), value);
+        }
+    }
+
+    void checkType(Type type, Type expected, String error) {
         if (!expected.equals(type)) {
             throw new IllegalStateException(String.format(error, expected, type));
         }
@@ -286,33 +458,33 @@ public class XLInterpreter {
 
     private Value unaryOperatorExpression(final UnaryOpNode unaryOp) {
         Value operand = evaluateExpression(unaryOp.getExpr());
-        checkType(operand.getType(), interpreter.getType(TYPE_NUMBER), "Unary operator expected a %s but got %s in expression " + unaryOp);
+        checkType(operand.getType(), interpreter.getType(TYPE_NUMBER), UNARY_OPERAND_ERROR + unaryOp);
         if (unaryOp instanceof NegativeSignedNode) {
-            return new Value(-((Long) operand.getValue()), interpreter.getType(TYPE_NUMBER));
+            return number(-operand.longValue());
         } else if (unaryOp instanceof PositiveSignedNode) {
-            return new Value(operand.getValue(), interpreter.getType(TYPE_NUMBER));
+            return positive(operand);
         } else if (unaryOp instanceof PreIncrementNode) {
-            Value result = callUnaryNumericFunction(operand, "preincrement");
+            Value result = callUnaryNumericFunction(operand, PRE_INCREMENT);
             if (unaryOp.getExpr() instanceof IdentifierNode) {
-                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getChars(), result);
+                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getSymbol(), result);
             }
             return result;
         } else if (unaryOp instanceof PreDecrementNode) {
-            Value result = callUnaryNumericFunction(operand, "predecrement");
+            Value result = callUnaryNumericFunction(operand, PRE_DECREMENT);
             if (unaryOp.getExpr() instanceof IdentifierNode) {
-                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getChars(), result);
+                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getSymbol(), result);
             }
             return result;
         } else if (unaryOp instanceof PostIncrementNode) {
-            Value result = callUnaryNumericFunction(operand, "postincrement");
+            Value result = callUnaryNumericFunction(operand, POST_INCREMENT);
             if (unaryOp.getExpr() instanceof IdentifierNode) {
-                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getChars(), result);
+                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getSymbol(), result);
             }
             return operand;
         } else if (unaryOp instanceof PostDecrementNode) {
-            Value result = callUnaryNumericFunction(operand, "postdecrement");
+            Value result = callUnaryNumericFunction(operand, POST_DECREMENT);
             if (unaryOp.getExpr() instanceof IdentifierNode) {
-                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getChars(), result);
+                interpreter.assignVariableValue(((IdentifierNode) unaryOp.getExpr()).getSymbol(), result);
             }
             return operand;
         } else {
@@ -321,7 +493,7 @@ public class XLInterpreter {
     }
 
     private Value identifierExpression(final IdentifierNode expression) {
-        String identifierName = expression.getChars();
+        Symbol identifierName = expression.getSymbol();
         Value value = interpreter.identifier(identifierName);
         if (value.getType().equals(interpreter.getType(TYPE_NUMBER))) {
             return value;
@@ -329,19 +501,143 @@ public class XLInterpreter {
         return interpreter.identifier(identifierName);
     }
 
+    // nodes may be shared between interpreters, so a boxed literal is only reused if it has this interpreter's Type
     private Value literalExpression(final LiteralNode literal) {
-        try {
-            Long longValue = Long.parseLong(literal.getValue());
-            return new Value(longValue, interpreter.getType(TYPE_NUMBER));
-        } catch (NumberFormatException e) {
-            throw new IllegalStateException("Unable to parse literal " + literal.getValue() + " in expression " + literal);
+        Object boxed = literal.getBoxed();
+        if (boxed instanceof NumberValue && ((NumberValue) boxed).getType() == numberType) {
+            return (Value) boxed;
+        }
+        Value value = number(literal.getValue());
+        literal.setBoxed(value);
+        return value;
+    }
+
+    // Flattened trees; each case mirrors the evaluation of the corresponding node class above
+
+    private Value evaluate(final FlatAst ast, final Value[] literalValues, final int node) {
+        switch (ast.kind(node)) {
+        case FlatAst.LITERAL:
+            int literal = ast.literalIndex(node);
+            Value value = literalValues[literal];
+            if (value == null) {
+                value = number(ast.literal(node));
+                literalValues[literal] = value;
+            }
+            return value;
+        case FlatAst.IDENTIFIER:
+            return interpreter.identifier(ast.symbol(node));
+        case FlatAst.PLUS:
+            return flatBinaryOperator(ast, literalValues, node, ADD);
+        case FlatAst.MINUS:
+            return flatBinaryOperator(ast, literalValues, node, SUBTRACT);
+        case FlatAst.MULTIPLY:
+            return flatBinaryOperator(ast, literalValues, node, MULTIPLY);
+        case FlatAst.DIVIDE:
+            return flatBinaryOperator(ast, literalValues, node, DIVIDE);
+        case FlatAst.ASSIGNMENT:
+            if (ast.kind(ast.left(node)) != FlatAst.IDENTIFIER) {
+                throw new IllegalStateException("The left hand side of an assignment must be an identifier in expression " + ast.toString(node));
+            }
+            return assign(ast.symbol(ast.left(node)), evaluate(ast, literalValues, ast.right(node)));
+        case FlatAst.NEGATIVE_SIGNED:
+        case FlatAst.POSITIVE_SIGNED:
+        case FlatAst.PRE_INCREMENT:
+        case FlatAst.PRE_DECREMENT:
+        case FlatAst.POST_INCREMENT:
+        case FlatAst.POST_DECREMENT:
+            return flatUnaryOperator(ast, literalValues, node);
+        case FlatAst.FUNCTION_DECLARATION:
+            return flatFunctionDeclaration(ast, literalValues, node);
+        case FlatAst.FUNCTION_CALL:
+            return flatFunctionCall(ast, literalValues, node);
+        case FlatAst.EXPRESSION_LIST:
+            Value result = null;
+            for (int i = 0; i < ast.listSize(node); i++) {
+                result = evaluate(ast, literalValues, ast.listElement(node, i));
+            }
+            return result;
+        default:
+            throw new IllegalStateException("Don't know how to evaluate expression " + ast.toString(node));
+        }
+    }
+
+    private Value flatBinaryOperator(final FlatAst ast, final Value[] literalValues, final int node, final Symbol name) {
+        Value left = evaluate(ast, literalValues, ast.left(node));
+        Value right = evaluate(ast, literalValues, ast.right(node));
+        return callBinaryNumericFunction(left, right, name);
+    }
+
+    private Value flatUnaryOperator(final FlatAst ast, final Value[] literalValues, final int node) {
+        int expr = ast.operand(node);
+        Value operand = evaluate(ast, literalValues, expr);
+        checkType(operand.getType(), interpreter.getType(TYPE_NUMBER), UNARY_OPERAND_ERROR + ast.toString(node));
+        Value result;
+        switch (ast.kind(node)) {
+        case FlatAst.NEGATIVE_SIGNED:
+            return number(-operand.longValue());
+        case FlatAst.POSITIVE_SIGNED:
+            return positive(operand);
+        case FlatAst.PRE_INCREMENT:
+            result = callUnaryNumericFunction(operand, PRE_INCREMENT);
+            break;
+        case FlatAst.PRE_DECREMENT:
+            result = callUnaryNumericFunction(operand, PRE_DECREMENT);
+            break;
+        case FlatAst.POST_INCREMENT:
+            result = callUnaryNumericFunction(operand, POST_INCREMENT);
+            break;
+        default:
+            result = callUnaryNumericFunction(operand, POST_DECREMENT);
+            break;
+        }
+        if (ast.kind(expr) == FlatAst.IDENTIFIER) {
+            interpreter.assignVariableValue(ast.symbol(expr), result);
+        }
+        boolean post = ast.kind(node) == FlatAst.POST_INCREMENT || ast.kind(node) == FlatAst.POST_DECREMENT;
+        return post ? operand : result;
+    }
+
+    private Value flatFunctionCall(final FlatAst ast, final Value[] literalValues, final int node) {
+        int argumentsNode = ast.arguments(node);
+        Type parameterType;
+        List<Value> arguments;
+        if (ast.kind(argumentsNode) == FlatAst.ARGUMENT_LIST) {
+            Value[] values = new Value[ast.listSize(argumentsNode)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = evaluate(ast, literalValues, ast.listElement(argumentsNode, i));
+            }
+            return interpreter.callFunction(interpreter.getFunction(ast.symbol(node), values), values);
+        } else if (ast.kind(argumentsNode) == FlatAst.EMPTY) {
+            arguments = List.of();
+            parameterType = interpreter.getType(TYPE_UNIT);
+        } else {
+            Value argument = evaluate(ast, literalValues, argumentsNode);
+            arguments = List.of(argument);
+            parameterType = argument.getType();
+        }
+        Function function = interpreter.getFunction(ast.symbol(node), parameterType);
+        return interpreter.callFunction(function, arguments);
+    }
+
+    private Value flatFunctionDeclaration(final FlatAst ast, final Value[] literalValues, final int node) {
+        int signature = ast.left(node);
+        int parameterTypes = ast.left(signature);
+        int returnTypeNodes = ast.right(signature);
+        List<FunctionParameter> functionParameters = new ArrayList<>();
+        for (int i = 0; i < ast.listSize(parameterTypes); i++) {
+            int typeExpression = ast.listElement(parameterTypes, i);
+            Symbol name = ast.symbol(ast.left(typeExpression));
+            functionParameters.add(new FunctionParameter(name, interpreter.getType(ast.symbol(ast.right(typeExpression)).name())));
+        }
+        List<String> returnTypes = new ArrayList<>();
+        for (int i = 0; i < ast.listSize(returnTypeNodes); i++) {
+            returnTypes.add(ast.symbol(ast.listElement(returnTypeNodes, i)).name());
         }
+        return declareFunction(functionParameters, returnTypes, new FlatInterpretedFunction(ast, literalValues, ast.right(node)));
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> T popValue(Stack<Value> stack, Type expectedType, String error) {
-        Value value = pop(stack, expectedType, error);
-        return (T) value.getValue();
+    private long popNumber(Stack<Value> stack, String error) {
+        return pop(stack, numberType, error).longValue();
     }
 
     private Value pop(Stack<Value> stack, Type expectedType, String error) {
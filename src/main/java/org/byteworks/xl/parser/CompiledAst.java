@@ -0,0 +1,175 @@
+package org.byteworks.xl.parser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.lexer.Symbol;
+
+/**
+ * Reads and writes a {@link FlatAst} in the binary .xlc format, so that an unchanged script runs without being lexed or
+ * parsed again. A file with another version or a checksum that does not match is ignored, and the source is parsed
+ * again.
+ */
+public final class CompiledAst {
+    public static final String EXTENSION = ".xlc";
+    private static final int MAGIC = 0x584c4300;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * 9;
+
+    private CompiledAst() {
+    }
+
+    /**
+     * The flattened tree of the script at the given path, from its .xlc file if that is up to date, or else parsed from
+     * the source, in which case the .xlc file is (re)written.
+     */
+    public static FlatAst load(Path source, PrintStream debugStream) throws IOException {
+        ByteBuffer bytes = map(source);
+        int sourceChecksum = checksum(bytes);
+        Path compiled = compiledPath(source);
+        FlatAst ast = Files.exists(compiled) ? read(compiled, sourceChecksum) : null;
+        if (ast == null) {
+            ast = XLParser.createParser(new Lexer(bytes), debugStream).parseFlat();
+            write(ast, sourceChecksum, compiled);
+        }
+        return ast;
+    }
+
+    /**
+     * Where {@link #load} keeps the compiled form of a script: next to it, with .xl replaced by .xlc.
+     */
+    public static Path compiledPath(Path source) {
+        String name = source.getFileName().toString();
+        return source.resolveSibling(name.endsWith(".xl") ? name + "c" : name + EXTENSION);
+    }
+
+    /**
+     * The CRC-32 of the remaining bytes of a source; the buffer's position is left where it was.
+     */
+    public static int checksum(ByteBuffer source) {
+        CRC32 crc = new CRC32();
+        crc.update(source.duplicate());
+        return (int) crc.getValue();
+    }
+
+    public static void write(FlatAst ast, int sourceChecksum, Path path) throws IOException {
+        int symbolChars = 0;
+        for (Symbol symbol : ast.symbols) {
+            symbolChars += symbol.name().length();
+        }
+        int length = HEADER_SIZE + 4 * (3 * ast.size + ast.elements.length + ast.statements.length + ast.symbols.length) + 8 * ast.literals.length
+                + 2 * symbolChars + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sourceChecksum)
+                .putInt(ast.size).putInt(ast.elements.length).putInt(ast.literals.length).putInt(ast.symbols.length).putInt(ast.statements.length)
+                .putInt(symbolChars);
+        putInts(buffer, ast.kinds);
+        putInts(buffer, ast.firsts);
+        putInts(buffer, ast.seconds);
+        putInts(buffer, ast.elements);
+        putInts(buffer, ast.statements);
+        buffer.asLongBuffer().put(ast.literals);
+        buffer.position(buffer.position() + 8 * ast.literals.length);
+        for (Symbol symbol : ast.symbols) {
+            String name = symbol.name();
+            buffer.putInt(name.length());
+            for (int i = 0; i < name.length(); i++) {
+                buffer.putChar(name.charAt(i));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        // written beside the target and moved over it, so that a reader never maps a half written file
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The tree in a .xlc file, or null if the file is not a version {@value #VERSION} .xlc file compiled from a source
+     * with the given checksum, or is damaged.
+     */
+    public static FlatAst read(Path path, int sourceChecksum) throws IOException {
+        ByteBuffer buffer = map(path);
+        if (buffer.remaining() < HEADER_SIZE + 4 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != sourceChecksum) {
+            return null;
+        }
+        int end = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(end));
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            return null;
+        }
+        buffer.limit(end);
+        try {
+            int size = buffer.getInt();
+            int elementCount = buffer.getInt();
+            int literalCount = buffer.getInt();
+            int symbolCount = buffer.getInt();
+            int statementCount = buffer.getInt();
+            int symbolChars = buffer.getInt();
+            if ((long) 4 * (3 * (long) size + elementCount + statementCount + symbolCount) + 8L * literalCount + 2L * symbolChars != buffer.remaining()) {
+                return null;
+            }
+            int[] kinds = getInts(buffer, size);
+            int[] firsts = getInts(buffer, size);
+            int[] seconds = getInts(buffer, size);
+            int[] elements = getInts(buffer, elementCount);
+            int[] statements = getInts(buffer, statementCount);
+            long[] literals = new long[literalCount];
+            buffer.asLongBuffer().get(literals);
+            buffer.position(buffer.position() + 8 * literalCount);
+            Symbol[] symbols = new Symbol[symbolCount];
+            for (int i = 0; i < symbolCount; i++) {
+                char[] name = new char[buffer.getInt()];
+                buffer.asCharBuffer().get(name);
+                buffer.position(buffer.position() + 2 * name.length);
+                symbols[i] = Symbol.intern(new String(name));
+            }
+            return new FlatAst(kinds, firsts, seconds, elements, literals, symbols, statements);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Cannot map " + path + " (" + size + " bytes) in one piece");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + 4 * values.length);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+}
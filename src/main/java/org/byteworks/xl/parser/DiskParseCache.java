@@ -0,0 +1,186 @@
+package org.byteworks.xl.parser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.byteworks.lexer.Lexer;
+
+/**
+ * A size-capped cache of parsed XL source in a directory, with one {@link CompiledAst} file per source, shared by
+ * restarts and other JVMs on the host. The least recently used files are deleted when the cap is exceeded. Safe for
+ * concurrent use.
+ */
+public class DiskParseCache {
+    private static final String EXTENSION = CompiledAst.EXTENSION;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final PrintStream debugStream;
+
+    // the size of the directory as last measured, plus what this cache has written since
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DiskParseCache(final Path directory, final long maxBytes, final PrintStream debugStream) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Parse cache size limit must be positive (got " + maxBytes + " bytes)");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.debugStream = debugStream;
+        this.bytes.set(measure(cachedFiles()));
+    }
+
+    /**
+     * Parse the source, or read the tree from the file an earlier parse of the same source left in the cache directory.
+     */
+    public FlatAst parse(String source) {
+        byte[] utf8 = source.getBytes(StandardCharsets.UTF_8);
+        int checksum = CompiledAst.checksum(ByteBuffer.wrap(utf8));
+        Path file = directory.resolve(key(utf8) + EXTENSION);
+        try {
+            FlatAst ast = read(file, checksum);
+            if (ast != null) {
+                hits.incrementAndGet();
+                return ast;
+            }
+            misses.incrementAndGet();
+            ast = XLParser.createParser(new Lexer(source), debugStream).parseFlat();
+            CompiledAst.write(ast, checksum, file);
+            if (bytes.addAndGet(Files.size(file)) > maxBytes) {
+                evict();
+            }
+            return ast;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to use parse cache file " + file, e);
+        }
+    }
+
+    private FlatAst read(Path file, int checksum) throws IOException {
+        try {
+            long size = Files.size(file);
+            FlatAst ast = CompiledAst.read(file, checksum);
+            if (ast != null) {
+                bytesRead.addAndGet(size);
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return ast;
+        } catch (NoSuchFileException e) {
+            // not cached yet, or evicted meanwhile
+            return null;
+        }
+    }
+
+    private synchronized void evict() throws IOException {
+        List<CachedFile> files = new ArrayList<>();
+        long size = 0;
+        for (Path path : cachedFiles()) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                files.add(new CachedFile(path, attributes.lastModifiedTime(), attributes.size()));
+                size += attributes.size();
+            } catch (NoSuchFileException e) {
+                // deleted by another cache sharing the directory
+            }
+        }
+        files.sort(Comparator.comparing(file -> file.lastUsed));
+        for (int i = 0; i < files.size() && size > maxBytes; i++) {
+            if (Files.deleteIfExists(files.get(i).path)) {
+                evictions.incrementAndGet();
+            }
+            size -= files.get(i).size;
+        }
+        bytes.set(size);
+    }
+
+    private static class CachedFile {
+        private final Path path;
+        private final FileTime lastUsed;
+        private final long size;
+
+        private CachedFile(final Path path, final FileTime lastUsed, final long size) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long measure(List<Path> files) throws IOException {
+        long size = 0;
+        for (Path file : files) {
+            try {
+                size += Files.size(file);
+            } catch (NoSuchFileException e) {
+                // deleted by another cache sharing the directory
+            }
+        }
+        return size;
+    }
+
+    private static String key(byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(4).putInt(XLParser.GRAMMAR_VERSION).array());
+            byte[] hash = digest.digest(source);
+            char[] chars = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                chars[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+                chars[2 * i + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The total size of the cached files, as far as this cache knows.
+     */
+    public long size() {
+        return bytes.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
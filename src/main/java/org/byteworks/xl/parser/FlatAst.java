@@ -0,0 +1,419 @@
+package org.byteworks.xl.parser;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.byteworks.lexer.Symbol;
+import org.byteworks.parser.Node;
+import org.byteworks.xl.parser.node.ArgumentListNode;
+import org.byteworks.xl.parser.node.AssignmentNode;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.DivideNode;
+import org.byteworks.xl.parser.node.EmptyNode;
+import org.byteworks.xl.parser.node.ExpressionListNode;
+import org.byteworks.xl.parser.node.FunctionCallNode;
+import org.byteworks.xl.parser.node.FunctionDeclarationNode;
+import org.byteworks.xl.parser.node.FunctionSignatureNode;
+import org.byteworks.xl.parser.node.IdentifierNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.MinusNode;
+import org.byteworks.xl.parser.node.MultiplyNode;
+import org.byteworks.xl.parser.node.NegativeSignedNode;
+import org.byteworks.xl.parser.node.PlusNode;
+import org.byteworks.xl.parser.node.PositiveSignedNode;
+import org.byteworks.xl.parser.node.PostDecrementNode;
+import org.byteworks.xl.parser.node.PostIncrementNode;
+import org.byteworks.xl.parser.node.PreDecrementNode;
+import org.byteworks.xl.parser.node.PreIncrementNode;
+import org.byteworks.xl.parser.node.TypeExpressionNode;
+
+/**
+ * An XL syntax tree held as primitive columns instead of node objects: a node is an int index into parallel arrays of
+ * kinds and two operands. Children are added before their parent, and the tree is immutable once built.
+ */
+public final class FlatAst {
+    // the operands are the children, except that a literal's first indexes the literal pool, an identifier's and a
+    // call's first the symbol pool, and a list's first and second are the offset and number of its elements
+    public static final int EMPTY = 0;
+    public static final int LITERAL = 1;
+    public static final int IDENTIFIER = 2;
+    public static final int PLUS = 3;
+    public static final int MINUS = 4;
+    public static final int MULTIPLY = 5;
+    public static final int DIVIDE = 6;
+    public static final int ASSIGNMENT = 7;
+    public static final int NEGATIVE_SIGNED = 8;
+    public static final int POSITIVE_SIGNED = 9;
+    public static final int PRE_INCREMENT = 10;
+    public static final int PRE_DECREMENT = 11;
+    public static final int POST_INCREMENT = 12;
+    public static final int POST_DECREMENT = 13;
+    public static final int ARGUMENT_LIST = 14;
+    public static final int FUNCTION_CALL = 15;
+    public static final int FUNCTION_DECLARATION = 16;
+    public static final int FUNCTION_SIGNATURE = 17;
+    public static final int TYPE_EXPRESSION = 18;
+    public static final int EXPRESSION_LIST = 19;
+    // the parameter and return type lists of a signature
+    public static final int LIST = 20;
+
+    // package-private so that CompiledAst can write the columns out and read them back
+    final int[] kinds;
+    final int[] firsts;
+    final int[] seconds;
+    final int size;
+    final int[] elements;
+    final long[] literals;
+    final Symbol[] symbols;
+    final int[] statements;
+
+    private FlatAst(final Builder builder) {
+        this(Arrays.copyOf(builder.kinds, builder.size), Arrays.copyOf(builder.firsts, builder.size), Arrays.copyOf(builder.seconds, builder.size),
+                Arrays.copyOf(builder.elements, builder.elementCount), Arrays.copyOf(builder.literals, builder.literalCount),
+                Arrays.copyOf(builder.symbols, builder.symbolCount), Arrays.copyOf(builder.statements, builder.statementCount));
+    }
+
+    FlatAst(final int[] kinds, final int[] firsts, final int[] seconds, final int[] elements, final long[] literals, final Symbol[] symbols,
+            final int[] statements) {
+        this.kinds = kinds;
+        this.firsts = firsts;
+        this.seconds = seconds;
+        this.size = kinds.length;
+        this.elements = elements;
+        this.literals = literals;
+        this.symbols = symbols;
+        this.statements = statements;
+    }
+
+    public static FlatAst of(List<? extends Node> statements) {
+        Builder builder = new Builder();
+        for (Node statement : statements) {
+            builder.addStatement(statement);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int statementCount() {
+        return statements.length;
+    }
+
+    public int statement(int index) {
+        return statements[index];
+    }
+
+    public int kind(int node) {
+        return kinds[node];
+    }
+
+    public int left(int node) {
+        return firsts[node];
+    }
+
+    public int right(int node) {
+        return seconds[node];
+    }
+
+    public int operand(int node) {
+        return firsts[node];
+    }
+
+    public long literal(int node) {
+        return literals[firsts[node]];
+    }
+
+    /**
+     * The position of a literal node's value in the literal pool, for callers that keep something per literal.
+     */
+    public int literalIndex(int node) {
+        return firsts[node];
+    }
+
+    public int literalCount() {
+        return literals.length;
+    }
+
+    public Symbol symbol(int node) {
+        return symbols[firsts[node]];
+    }
+
+    public int arguments(int node) {
+        return seconds[node];
+    }
+
+    public int listSize(int node) {
+        return seconds[node];
+    }
+
+    public int listElement(int node, int index) {
+        return elements[firsts[node] + index];
+    }
+
+    /**
+     * Render a node the same way the equivalent node object's toString() does.
+     */
+    public String toString(int node) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, node);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < statements.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            append(sb, statements[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private void append(StringBuilder sb, int node) {
+        switch (kinds[node]) {
+        case EMPTY:
+            break;
+        case LITERAL:
+            sb.append(literal(node));
+            break;
+        case IDENTIFIER:
+            sb.append(symbol(node).name());
+            break;
+        case PLUS:
+            appendBinary(sb, "+", node);
+            break;
+        case MINUS:
+            appendBinary(sb, "-", node);
+            break;
+        case MULTIPLY:
+            appendBinary(sb, "*", node);
+            break;
+        case DIVIDE:
+            appendBinary(sb, "/", node);
+            break;
+        case ASSIGNMENT:
+            appendBinary(sb, "=", node);
+            break;
+        case NEGATIVE_SIGNED:
+            appendUnary(sb, "-", node);
+            break;
+        case POSITIVE_SIGNED:
+            appendUnary(sb, "+", node);
+            break;
+        case PRE_INCREMENT:
+        case POST_INCREMENT:
+            appendUnary(sb, "++", node);
+            break;
+        case PRE_DECREMENT:
+        case POST_DECREMENT:
+            appendUnary(sb, "--", node);
+            break;
+        case ARGUMENT_LIST:
+            appendList(sb, node, ", ");
+            break;
+        case FUNCTION_CALL:
+            sb.append('(').append(symbol(node).name()).append(" (");
+            append(sb, arguments(node));
+            sb.append("))");
+            break;
+        case FUNCTION_DECLARATION:
+            sb.append("fn ");
+            append(sb, left(node));
+            sb.append(' ');
+            append(sb, right(node));
+            break;
+        case FUNCTION_SIGNATURE:
+            int parameters = left(node);
+            int returnTypes = right(node);
+            if (listSize(parameters) > 0) {
+                appendList(sb, parameters, " ");
+                sb.append(' ');
+            }
+            sb.append("->");
+            if (listSize(returnTypes) > 0) {
+                sb.append(' ');
+                appendList(sb, returnTypes, " ");
+            }
+            break;
+        case TYPE_EXPRESSION:
+            append(sb, left(node));
+            sb.append(':');
+            append(sb, right(node));
+            break;
+        case EXPRESSION_LIST:
+            sb.append("{ ");
+            appendList(sb, node, ",");
+            sb.append(" }");
+            break;
+        case LIST:
+            appendList(sb, node, " ");
+            break;
+        default:
+            throw new IllegalStateException("Unknown node kind " + kinds[node]);
+        }
+    }
+
+    private void appendBinary(StringBuilder sb, String op, int node) {
+        sb.append('(').append(op).append(' ');
+        append(sb, left(node));
+        sb.append(' ');
+        append(sb, right(node));
+        sb.append(')');
+    }
+
+    private void appendUnary(StringBuilder sb, String op, int node) {
+        sb.append(op).append('(');
+        append(sb, operand(node));
+        sb.append(')');
+    }
+
+    private void appendList(StringBuilder sb, int node, String separator) {
+        for (int i = 0; i < listSize(node); i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            append(sb, listElement(node, i));
+        }
+    }
+
+    public static class Builder {
+        private int[] kinds = new int[64];
+        private int[] firsts = new int[64];
+        private int[] seconds = new int[64];
+        private int size;
+        private int[] elements = new int[16];
+        private int elementCount;
+        private long[] literals = new long[16];
+        private int literalCount;
+        private Symbol[] symbols = new Symbol[16];
+        private int symbolCount;
+        private final Map<Symbol, Integer> symbolIndexes = new IdentityHashMap<>();
+        private int[] statements = new int[16];
+        private int statementCount;
+
+        public void addStatement(Node statement) {
+            int node = add(statement);
+            if (statementCount == statements.length) {
+                statements = Arrays.copyOf(statements, statementCount * 2);
+            }
+            statements[statementCount++] = node;
+        }
+
+        public FlatAst build() {
+            return new FlatAst(this);
+        }
+
+        private int add(Node node) {
+            if (node instanceof LiteralNode) {
+                return addNode(LITERAL, addLiteral(((LiteralNode) node).getValue()), 0);
+            } else if (node instanceof IdentifierNode) {
+                return addNode(IDENTIFIER, addSymbol(((IdentifierNode) node).getSymbol()), 0);
+            } else if (node instanceof PlusNode) {
+                return addBinary(PLUS, (PlusNode) node);
+            } else if (node instanceof MinusNode) {
+                return addBinary(MINUS, (MinusNode) node);
+            } else if (node instanceof MultiplyNode) {
+                return addBinary(MULTIPLY, (MultiplyNode) node);
+            } else if (node instanceof DivideNode) {
+                return addBinary(DIVIDE, (DivideNode) node);
+            } else if (node instanceof AssignmentNode) {
+                return addBinary(ASSIGNMENT, (AssignmentNode) node);
+            } else if (node instanceof NegativeSignedNode) {
+                return addNode(NEGATIVE_SIGNED, add(((NegativeSignedNode) node).getExpr()), 0);
+            } else if (node instanceof PositiveSignedNode) {
+                return addNode(POSITIVE_SIGNED, add(((PositiveSignedNode) node).getExpr()), 0);
+            } else if (node instanceof PreIncrementNode) {
+                return addNode(PRE_INCREMENT, add(((PreIncrementNode) node).getExpr()), 0);
+            } else if (node instanceof PreDecrementNode) {
+                return addNode(PRE_DECREMENT, add(((PreDecrementNode) node).getExpr()), 0);
+            } else if (node instanceof PostIncrementNode) {
+                return addNode(POST_INCREMENT, add(((PostIncrementNode) node).getExpr()), 0);
+            } else if (node instanceof PostDecrementNode) {
+                return addNode(POST_DECREMENT, add(((PostDecrementNode) node).getExpr()), 0);
+            } else if (node instanceof ArgumentListNode) {
+                return addList(ARGUMENT_LIST, ((ArgumentListNode) node).getArguments());
+            } else if (node instanceof FunctionCallNode) {
+                FunctionCallNode call = (FunctionCallNode) node;
+                int arguments = add(call.getArguments());
+                return addNode(FUNCTION_CALL, addSymbol(call.getSymbol()), arguments);
+            } else if (node instanceof FunctionDeclarationNode) {
+                FunctionDeclarationNode declaration = (FunctionDeclarationNode) node;
+                int signature = add(declaration.getFunctionSignature());
+                return addNode(FUNCTION_DECLARATION, signature, add(declaration.getBody()));
+            } else if (node instanceof FunctionSignatureNode) {
+                FunctionSignatureNode signature = (FunctionSignatureNode) node;
+                int parameters = addList(LIST, signature.getParameterTypes());
+                return addNode(FUNCTION_SIGNATURE, parameters, addList(LIST, signature.getReturnTypes()));
+            } else if (node instanceof TypeExpressionNode) {
+                TypeExpressionNode typeExpression = (TypeExpressionNode) node;
+                int target = add(typeExpression.getTarget());
+                return addNode(TYPE_EXPRESSION, target, add(typeExpression.getTypeExpression()));
+            } else if (node instanceof ExpressionListNode) {
+                return addList(EXPRESSION_LIST, ((ExpressionListNode) node).getList());
+            } else if (node instanceof EmptyNode) {
+                return addNode(EMPTY, 0, 0);
+            }
+            throw new IllegalArgumentException("Don't know how to flatten node " + node.getClass().getSimpleName() + "='" + node + "'");
+        }
+
+        private int addBinary(int kind, BinaryOpNode node) {
+            int left = add(node.getLhs());
+            return addNode(kind, left, add(node.getRhs()));
+        }
+
+        private int addList(int kind, List<? extends Node> nodes) {
+            // the elements are added first, so that their own lists don't interleave with this one
+            int[] added = new int[nodes.size()];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = add(nodes.get(i));
+            }
+            if (elementCount + added.length > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(elements.length * 2, elementCount + added.length));
+            }
+            int offset = elementCount;
+            System.arraycopy(added, 0, elements, offset, added.length);
+            elementCount += added.length;
+            return addNode(kind, offset, added.length);
+        }
+
+        private int addNode(int kind, int first, int second) {
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                firsts = Arrays.copyOf(firsts, capacity);
+                seconds = Arrays.copyOf(seconds, capacity);
+            }
+            kinds[size] = kind;
+            firsts[size] = first;
+            seconds[size] = second;
+            return size++;
+        }
+
+        private int addLiteral(long value) {
+            if (literalCount == literals.length) {
+                literals = Arrays.copyOf(literals, literalCount * 2);
+            }
+            literals[literalCount] = value;
+            return literalCount++;
+        }
+
+        private int addSymbol(Symbol symbol) {
+            Integer index = symbolIndexes.get(symbol);
+            if (index != null) {
+                return index;
+            }
+            if (symbolCount == symbols.length) {
+                symbols = Arrays.copyOf(symbols, symbolCount * 2);
+            }
+            symbols[symbolCount] = symbol;
+            symbolIndexes.put(symbol, symbolCount);
+            return symbolCount++;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.byteworks.xl.parser;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.parser.Node;
+
+/**
+ * Keeps a script parsed while it is being edited. An edit re-parses only the segments it touches, each a run of
+ * top-level statements split as by {@link ParallelParser}; a segment that does not parse keeps its error. Not safe for
+ * concurrent use.
+ */
+public class IncrementalParser {
+    private final PrintStream debugStream;
+    private final List<Segment> segments = new ArrayList<>();
+    // segments from this index on have a start offset that is out by shift
+    private int shiftFrom;
+    private int shift;
+    private int length;
+    private int reparsed;
+
+    /**
+     * The statements parsed from one span of the source.
+     */
+    public static class Segment {
+        private int start;
+        private final String text;
+        private final List<Node> nodes;
+        private final RuntimeException error;
+
+        private Segment(final int start, final String text, final List<Node> nodes, final RuntimeException error) {
+            this.start = start;
+            this.text = text;
+            this.nodes = nodes;
+            this.error = error;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<Node> getNodes() {
+            return nodes;
+        }
+
+        /**
+         * The exception that parsing this segment failed with, or null.
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    public IncrementalParser(final String source, final PrintStream debugStream) {
+        this.debugStream = debugStream;
+        this.segments.addAll(parseSegments(source, 0));
+        this.reparsed = segments.size();
+        keepOneSegment();
+        this.shiftFrom = segments.size();
+        this.length = source.length();
+    }
+
+    /**
+     * Replace the characters from start (inclusive) to end (exclusive) with the replacement.
+     */
+    public void edit(int start, int end, String replacement) {
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException("Edit range " + start + ".." + end + " is outside of the source (length " + length + ")");
+        }
+        int first = segmentAt(start);
+        int last = end > start ? segmentAt(end - 1) : first;
+        int firstStart = start(first);
+        Segment lastSegment = segments.get(last);
+        StringBuilder text = new StringBuilder(segments.get(first).text.substring(0, start - firstStart))
+                .append(replacement)
+                .append(lastSegment.text.substring(end - start(last)));
+        // re-split from the first segment until a split falls where a segment ended before, after which nothing changes
+        int split;
+        int from = 0;
+        while ((split = ParallelParser.nextSplit(text, from)) != text.length() - 1 && last + 1 < segments.size()) {
+            if (split >= 0) {
+                from = split + 1;
+            } else {
+                text.append(segments.get(++last).text);
+            }
+        }
+        List<Segment> parsed = parseSegments(text.toString(), firstStart);
+
+        moveShift(last + 1);
+        List<Segment> replaced = segments.subList(first, last + 1);
+        replaced.clear();
+        replaced.addAll(parsed);
+        shiftFrom = first + parsed.size();
+        int delta = replacement.length() - (end - start);
+        shift += delta;
+        length += delta;
+        reparsed = parsed.size();
+        keepOneSegment();
+    }
+
+    /**
+     * All top-level statements, in source order. They are those of one XLParser over the whole source only if that
+     * parse succeeds; a segment can parse on its own where the whole source does not.
+     */
+    public List<Node> statements() {
+        List<Node> nodes = new ArrayList<>();
+        for (Segment segment : segments) {
+            nodes.addAll(segment.nodes);
+        }
+        return nodes;
+    }
+
+    public List<Segment> segments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    public String source() {
+        StringBuilder sb = new StringBuilder(length);
+        for (Segment segment : segments) {
+            sb.append(segment.text);
+        }
+        return sb.toString();
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The number of segments that the last edit, or the initial parse, lexed and parsed.
+     */
+    public int getReparsed() {
+        return reparsed;
+    }
+
+    /**
+     * The offset in the source at which the segment with the given index starts; it ends where the next one starts.
+     */
+    public int start(int index) {
+        return segments.get(index).start + (index >= shiftFrom ? shift : 0);
+    }
+
+    // the last segment starting at or before the offset
+    private int segmentAt(int offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (start(mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // apply the pending shift to the segments between shiftFrom and index, so that it starts at index instead
+    private void moveShift(int index) {
+        if (shift != 0) {
+            for (int i = shiftFrom; i < index; i++) {
+                segments.get(i).start += shift;
+            }
+            for (int i = index; i < shiftFrom; i++) {
+                segments.get(i).start -= shift;
+            }
+        }
+        shiftFrom = index;
+    }
+
+    // an empty source is one empty segment, so that there is always a segment to edit
+    private void keepOneSegment() {
+        if (segments.isEmpty()) {
+            segments.add(new Segment(0, "", List.of(), null));
+            shiftFrom = 1;
+            shift = 0;
+        }
+    }
+
+    private List<Segment> parseSegments(String text, int offset) {
+        List<Segment> parsed = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int split = ParallelParser.nextSplit(text, start);
+            // a segment keeps the line break that ends it, so that the segments add up to the source
+            int end = split < 0 ? text.length() : split + 1;
+            parsed.add(parseSegment(offset + start, text.substring(start, end)));
+            start = end;
+        }
+        return parsed;
+    }
+
+    private Segment parseSegment(int start, String text) {
+        try {
+            return new Segment(start, text, List.copyOf(XLParser.createParser(new Lexer(text), debugStream).parse()), null);
+        } catch (RuntimeException e) {
+            return new Segment(start, text, List.of(), e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.byteworks.xl.parser;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.byteworks.parser.Node;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.IdentifierNode;
+import org.byteworks.xl.parser.node.LiteralNode;
+import org.byteworks.xl.parser.node.UnaryOpNode;
+
+/**
+ * A weak table of canonical operator, literal and identifier nodes, for hash-consing syntax trees. Nodes must be
+ * interned bottom-up, since children are compared by identity. Safe for concurrent use.
+ */
+public class NodeInterner {
+    private final Map<Key, Entry> table = new HashMap<>();
+    // entries whose node has been collected
+    private final ReferenceQueue<Node> collected = new ReferenceQueue<>();
+
+    @SuppressWarnings("unchecked")
+    public <T extends Node> T intern(T node) {
+        Key key = Key.of(node);
+        if (key == null) {
+            return node;
+        }
+        synchronized (table) {
+            expunge();
+            Entry entry = table.get(key);
+            Node canonical = entry == null ? null : entry.get();
+            if (canonical != null) {
+                return (T) canonical;
+            }
+            table.put(key, new Entry(node, key, collected));
+            return node;
+        }
+    }
+
+    public int size() {
+        synchronized (table) {
+            expunge();
+            return table.size();
+        }
+    }
+
+    // callers hold the lock
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            // a newer entry may have replaced the collected one under the same key
+            table.remove(entry.key, entry);
+        }
+    }
+
+    private static class Entry extends WeakReference<Node> {
+        private final Key key;
+
+        Entry(final Node node, final Key key, final ReferenceQueue<Node> queue) {
+            super(node, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The shallow identity of a node: its class, its children compared by identity, and its payload compared by value.
+     */
+    private static final class Key {
+        private final Class<?> type;
+        private final Object first;
+        private final Object second;
+        private final long value;
+        private final int hash;
+
+        private Key(final Class<?> type, final Object first, final Object second, final long value) {
+            this.type = type;
+            this.first = first;
+            this.second = second;
+            this.value = value;
+            this.hash = ((type.hashCode() * 31 + hash(first)) * 31 + hash(second)) * 31 + Long.hashCode(value);
+        }
+
+        static Key of(Node node) {
+            if (node instanceof BinaryOpNode) {
+                return new Key(node.getClass(), ((BinaryOpNode) node).getLhs(), ((BinaryOpNode) node).getRhs(), 0);
+            } else if (node instanceof UnaryOpNode) {
+                return new Key(node.getClass(), ((UnaryOpNode) node).getExpr(), null, 0);
+            } else if (node instanceof LiteralNode) {
+                // the characters as well as the value, so that 007 and 7 still print as written
+                return new Key(node.getClass(), ((LiteralNode) node).getChars(), null, ((LiteralNode) node).getValue());
+            } else if (node instanceof IdentifierNode) {
+                // symbols are interned, so identity is equality
+                return new Key(node.getClass(), ((IdentifierNode) node).getSymbol(), null, 0);
+            }
+            return null;
+        }
+
+        private static int hash(Object o) {
+            return o instanceof String ? o.hashCode() : System.identityHashCode(o);
+        }
+
+        private static boolean same(Object a, Object b) {
+            return a == b || (a instanceof String && a.equals(b));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && type == key.type && value == key.value && same(first, key.first) && same(second, key.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.byteworks.xl.parser;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.parser.Node;
+
+/**
+ * Parses large scripts on a fork/join pool, cutting the source at line breaks between top-level statements and parsing
+ * the chunks with separate {@link XLParser}s. If the whole script parses with one XLParser the statements are the
+ * same, in source order; a script that does not, such as one ending in a blank line, may still parse in chunks.
+ */
+public class ParallelParser {
+    // more chunks than threads, so that a slow chunk does not hold up the whole parse
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+
+    private final ForkJoinPool pool;
+    private final PrintStream debugStream;
+
+    public ParallelParser(final ForkJoinPool pool, final PrintStream debugStream) {
+        this.pool = pool;
+        this.debugStream = debugStream;
+    }
+
+    public List<Node> parse(String source) {
+        int chunks = Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, Math.max(1, source.length() / MIN_CHUNK_SIZE));
+        int[] splits = splitPoints(source, chunks);
+        if (splits.length == 0) {
+            return parseChunk(source);
+        }
+        List<ForkJoinTask<List<Node>>> tasks = new ArrayList<>(splits.length + 1);
+        int start = 0;
+        for (int split : splits) {
+            String chunk = source.substring(start, split);
+            tasks.add(pool.submit(() -> parseChunk(chunk)));
+            // the line break itself is dropped; it only separates statements
+            start = split + 1;
+        }
+        String last = source.substring(start);
+        tasks.add(pool.submit(() -> parseChunk(last)));
+        List<Node> nodes = new ArrayList<>();
+        for (ForkJoinTask<List<Node>> task : tasks) {
+            nodes.addAll(task.join());
+        }
+        return nodes;
+    }
+
+    private List<Node> parseChunk(String chunk) {
+        return XLParser.createParser(new Lexer(chunk), debugStream).parse();
+    }
+
+    /**
+     * The offsets of line breaks at which the source can be cut into about the given number of chunks of similar size.
+     */
+    static int[] splitPoints(CharSequence source, int chunks) {
+        int[] splits = new int[Math.max(chunks - 1, 0)];
+        int count = 0;
+        int chunkSize = source.length() / Math.max(chunks, 1);
+        int next = chunkSize;
+        int split = -1;
+        while (count < splits.length && (split = nextSplit(source, split + 1)) >= 0) {
+            if (split >= next) {
+                splits[count++] = split;
+                next = split + chunkSize;
+            }
+        }
+        return Arrays.copyOf(splits, count);
+    }
+
+    /**
+     * The offset of the first line break at or after <code>from</code> that ends a top-level statement, or -1 if there
+     * is none. <code>from</code> must be the start of the source or just after such a line break. XL has no strings or
+     * comments, so a line break ends a statement if it is outside any braces, parentheses and function signature and
+     * follows a number, an identifier, or a closing brace or parenthesis.
+     */
+    static int nextSplit(CharSequence source, int from) {
+        int depth = 0;
+        boolean complete = false;
+        // from fn up to the brace that opens the function's body, where the signature may go on to the next line
+        boolean signature = false;
+        for (int i = from; i < source.length(); i++) {
+            char ch = source.charAt(i);
+            if (ch == '\n') {
+                if (depth == 0 && complete && !signature) {
+                    return i;
+                }
+                complete = false;
+            } else if (isWordCharacter(ch)) {
+                if (i == from || !isWordCharacter(source.charAt(i - 1))) {
+                    signature |= isFunctionKeyword(source, i);
+                }
+                complete = true;
+            } else if (!Character.isWhitespace(ch)) {
+                if (ch == '{' || ch == '(') {
+                    depth++;
+                } else if (ch == '}' || ch == ')') {
+                    // a stray closing parenthesis is accepted by the parser, so it must not unbalance the rest
+                    depth = Math.max(depth - 1, 0);
+                }
+                if (ch == '{') {
+                    signature = false;
+                }
+                complete = ch == '}' || ch == ')';
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordCharacter(char ch) {
+        return Character.isDigit(ch) || Character.isAlphabetic(ch) || ch == '_';
+    }
+
+    // whether the word starting at the offset is fn
+    private static boolean isFunctionKeyword(CharSequence source, int start) {
+        return start + 1 < source.length() && source.charAt(start) == 'f' && source.charAt(start + 1) == 'n'
+                && (start + 2 == source.length() || !isWordCharacter(source.charAt(start + 2)));
+    }
+}
@@ -0,0 +1,94 @@
+package org.byteworks.xl.parser;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.parser.Node;
+
+/**
+ * A least-recently-used cache of parsed XL source, capped by the number of entries and their total length. Safe for
+ * concurrent use.
+ */
+public class ParseCache {
+    private final int maxEntries;
+    private final long maxChars;
+    private final PrintStream debugStream;
+
+    // access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, List<Node>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParseCache(final int maxEntries, final long maxChars, final PrintStream debugStream) {
+        if (maxEntries < 1 || maxChars < 1) {
+            throw new IllegalArgumentException("Parse cache limits must be positive (got " + maxEntries + " entries, " + maxChars + " chars)");
+        }
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.debugStream = debugStream;
+    }
+
+    /**
+     * Parse the source, or return the unmodifiable tree from an earlier parse of the same source.
+     */
+    public List<Node> parse(String source) {
+        synchronized (entries) {
+            List<Node> nodes = entries.get(source);
+            if (nodes != null) {
+                hits.incrementAndGet();
+                return nodes;
+            }
+        }
+        misses.incrementAndGet();
+        // parse outside of the lock; if another thread parses the same source meanwhile, the first one in wins
+        List<Node> nodes = List.copyOf(XLParser.createParser(new Lexer(source), debugStream).parse());
+        if (source.length() > maxChars) {
+            return nodes;
+        }
+        synchronized (entries) {
+            List<Node> existing = entries.putIfAbsent(source, nodes);
+            if (existing != null) {
+                return existing;
+            }
+            chars += source.length();
+            evict();
+        }
+        return nodes;
+    }
+
+    // callers hold the lock
+    private void evict() {
+        Iterator<Map.Entry<String, List<Node>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || chars > maxChars) {
+            chars -= eldest.next().getKey().length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
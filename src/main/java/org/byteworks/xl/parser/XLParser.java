@@ -5,8 +5,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.byteworks.parser.Node;
-import org.byteworks.lexer.Lexer;
+import org.byteworks.lexer.TokenSource;
 import org.byteworks.lexer.TokenType;
+import org.byteworks.parser.Grammar;
 import org.byteworks.parser.NodeList;
 import org.byteworks.parser.Pair;
 import org.byteworks.parser.ParseContext;
@@ -21,8 +22,8 @@ import org.byteworks.parser.rule.Require;
 import org.byteworks.parser.rule.RequireNode;
 import org.byteworks.parser.rule.RequireWithTerminator;
 import org.byteworks.parser.rule.Sequence;
+import org.byteworks.xl.parser.node.ArgumentListNode;
 import org.byteworks.xl.parser.node.AssignmentNode;
-import org.byteworks.xl.parser.node.CommaNode;
 import org.byteworks.xl.parser.node.DivideNode;
 import org.byteworks.xl.parser.node.EmptyNode;
 import org.byteworks.xl.parser.node.ExpressionListNode;
@@ -44,6 +45,11 @@ import org.byteworks.xl.parser.node.PreIncrementNode;
 import org.byteworks.xl.parser.node.TypeExpressionNode;
 
 public class XLParser<T extends Node> extends Parser<T> {
+    /**
+     * Changed whenever the grammar starts building different trees for the same source, so that trees persisted by an
+     * older version are not reused.
+     */
+    public static final int GRAMMAR_VERSION = 1;
 
     private static final Pair<Integer, Integer> EOL = new Pair<>(-1, 0);
     private static final Pair<Integer, Integer> EOF = new Pair<>(-1, null);
@@ -64,42 +70,35 @@ public class XLParser<T extends Node> extends Parser<T> {
 
     private static final Any<Node> eolParser = new Any<>(EOL.getRight());
 
-    public XLParser(final Lexer lexer, final PrintStream debugStream) {
-        super(lexer, debugStream);
+    private final NodeInterner interner;
+
+    public XLParser(final TokenSource lexer, final PrintStream debugStream) {
+        this(lexer, debugStream, null);
+    }
+
+    /**
+     * A parser that hash-conses the operator, literal and identifier nodes it builds through the given table, which may
+     * be shared with other parsers.
+     */
+    public XLParser(final TokenSource lexer, final PrintStream debugStream, final NodeInterner interner) {
+        super(grammar(), lexer, debugStream);
+        this.interner = interner;
+    }
+
+    public static XLParser<Node> createParser(TokenSource lexer, PrintStream debugStream) {
+        return new XLParser<>(lexer, debugStream);
+    }
+
+    public static XLParser<Node> createParser(TokenSource lexer, PrintStream debugStream, NodeInterner interner) {
+        return new XLParser<>(lexer, debugStream, interner);
     }
 
-    public static XLParser<Node> createParser(Lexer lexer, PrintStream debugStream) {
-        XLParser<Node> parser = new XLParser<>(lexer, debugStream);
-        parser.registerPrefixParserRule(TokenType.EOL, eolParser);
-        parser.registerPrefixParserRule(TokenType.LPAREN, lparenParser);
-        parser.registerPrefixParserRule(TokenType.NUMBER, numberNodeParser);
-        parser.registerPrefixParserRule(TokenType.RPAREN, constantEmpty);
-        parser.registerPrefixParserRule(TokenType.MINUS, minusNodeParser);
-        parser.registerPrefixParserRule(TokenType.PLUS, plusNodeParser);
-        parser.registerPrefixParserRule(TokenType.MINUSMINUS, preDecrementNodeParser);
-        parser.registerPrefixParserRule(TokenType.PLUSPLUS, preIncrementNodeParser);
-        parser.registerPrefixParserRule(TokenType.IDENTIFIER, identNodeParser);
-        parser.registerPrefixParserRule(TokenType.FUNCTION_DEFINITION, functionDeclarationNodeParser);
-        parser.registerPrefixParserRule(TokenType.LBRACE, leftBraceNodeParser);
-
-        parser.registerInfixParserRule(TokenType.PLUS, parseAddNode);
-        parser.registerInfixParserRule(TokenType.PLUSPLUS, postIncrementParser);
-        parser.registerInfixParserRule(TokenType.MINUS, subtractNodeParser);
-        parser.registerInfixParserRule(TokenType.MINUSMINUS, postDecrementNodeParser);
-        parser.registerInfixParserRule(TokenType.MULTIPLY, multiplyNodeParser);
-        parser.registerInfixParserRule(TokenType.DIVIDE, divideNodeParser);
-        parser.registerInfixParserRule(TokenType.ASSIGNMENT, assignmentNodeParser);
-        parser.registerInfixParserRule(TokenType.COMMA, commaNodeParser);
-        parser.registerInfixParserRule(TokenType.RPAREN, rightParenNodeParser);
-        parser.registerInfixParserRule(TokenType.LPAREN, functionCallNodeParser);
-        parser.registerInfixParserRule(TokenType.EOL, endOfLineParser);
-        parser.registerInfixParserRule(TokenType.EOF, eofNodeParser);
-        parser.registerInfixParserRule(TokenType.COLON, colonNodeParser);
-        parser.registerInfixParserRule(TokenType.IDENTIFIER, identifierNodeParser);
-        parser.registerInfixParserRule(TokenType.ARROW, arrowNodeParser);
-        parser.registerInfixParserRule(TokenType.LBRACE, leftBraceInfixNodeParser);
-        parser.registerInfixParserRule(TokenType.RBRACE, rightBraceInfixNodeParser);
-        return parser;
+    /**
+     * The XL grammar. It is built once and shared by every XLParser.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Node> Grammar<T> grammar() {
+        return (Grammar<T>) GrammarHolder.GRAMMAR;
     }
 
     // Prefix parsers
@@ -179,8 +178,20 @@ public class XLParser<T extends Node> extends Parser<T> {
             "Must provide an expression for lhs argument to assignment"), new Require<>(ASSIGNMENT.getRight(), ExpressionNode.class, "Must provide an expression for rhs argument to " +
             "assignment"), AssignmentNode::new);
 
-    private static final Compose<Node, Node, Node, CommaNode> commaNodeParser = new Compose<>(COMMA.getLeft(), new PassThrough<>(), new Require<>(COMMA.getRight(),
-            Node.class, ""), CommaNode::new);
+    // all of the arguments after the first comma are collected in one go, rather than nesting one comma node per argument
+    private static final Compose<Node, Node, NodeList<Node>, NodeList<Node>> restArgumentsParser = new Compose<>(new Require<>(COMMA.getRight(), Node.class,
+            "Must provide an argument after a comma"), new Sequence<>(new Require<>(COMMA.getRight(), Node.class, "Must provide an argument after a comma"),
+            (ParseContext<Node> pc) -> !pc.lexer.consumeIf(TokenType.COMMA)), XLParser::prepend);
+
+    private static final Compose<Node, Node, NodeList<Node>, ArgumentListNode> commaNodeParser = new Compose<>(COMMA.getLeft(), new PassThrough<>(),
+            restArgumentsParser, ArgumentListNode::new);
+
+    private static NodeList<Node> prepend(Node first, NodeList<Node> rest) {
+        List<Node> nodes = new ArrayList<>(rest.getNodes().size() + 1);
+        nodes.add(first);
+        nodes.addAll(rest.getNodes());
+        return new NodeList<>(nodes);
+    }
 
     private static final PassThrough<Node> rightParenNodeParser = new PassThrough<>(PARENS.getLeft());
 
@@ -204,19 +215,52 @@ public class XLParser<T extends Node> extends Parser<T> {
 
     private static final Constant<EmptyNode> rightBraceInfixNodeParser = new Constant<>(BRACES.getLeft(), new EmptyNode());
 
+    // in a holder class so that all of the rule fields above are initialized before the grammar is built from them
+    private static class GrammarHolder {
+        private static final Grammar<Node> GRAMMAR = Grammar.<Node>empty()
+                .withPrefixRule(TokenType.EOL, eolParser)
+                .withPrefixRule(TokenType.LPAREN, lparenParser)
+                .withPrefixRule(TokenType.NUMBER, numberNodeParser)
+                .withPrefixRule(TokenType.RPAREN, constantEmpty)
+                .withPrefixRule(TokenType.MINUS, minusNodeParser)
+                .withPrefixRule(TokenType.PLUS, plusNodeParser)
+                .withPrefixRule(TokenType.MINUSMINUS, preDecrementNodeParser)
+                .withPrefixRule(TokenType.PLUSPLUS, preIncrementNodeParser)
+                .withPrefixRule(TokenType.IDENTIFIER, identNodeParser)
+                .withPrefixRule(TokenType.FUNCTION_DEFINITION, functionDeclarationNodeParser)
+                .withPrefixRule(TokenType.LBRACE, leftBraceNodeParser)
+
+                .withInfixRule(TokenType.PLUS, parseAddNode)
+                .withInfixRule(TokenType.PLUSPLUS, postIncrementParser)
+                .withInfixRule(TokenType.MINUS, subtractNodeParser)
+                .withInfixRule(TokenType.MINUSMINUS, postDecrementNodeParser)
+                .withInfixRule(TokenType.MULTIPLY, multiplyNodeParser)
+                .withInfixRule(TokenType.DIVIDE, divideNodeParser)
+                .withInfixRule(TokenType.ASSIGNMENT, assignmentNodeParser)
+                .withInfixRule(TokenType.COMMA, commaNodeParser)
+                .withInfixRule(TokenType.RPAREN, rightParenNodeParser)
+                .withInfixRule(TokenType.LPAREN, functionCallNodeParser)
+                .withInfixRule(TokenType.EOL, endOfLineParser)
+                .withInfixRule(TokenType.EOF, eofNodeParser)
+                .withInfixRule(TokenType.COLON, colonNodeParser)
+                .withInfixRule(TokenType.IDENTIFIER, identifierNodeParser)
+                .withInfixRule(TokenType.ARROW, arrowNodeParser)
+                .withInfixRule(TokenType.LBRACE, leftBraceInfixNodeParser)
+                .withInfixRule(TokenType.RBRACE, rightBraceInfixNodeParser);
+    }
+
     @Override
-    public List<T> parse() {
-        List<T> nodes = super.parse();
-        return transform(nodes);
+    protected T parsed(final T node) {
+        return interner == null ? node : interner.intern(node);
     }
 
-    // TODO return an AbstractSyntaxTree that has function/type definitions
-    private List<T> transform(List<T> nodes) {
-        List<T> transformed = new ArrayList<>();
-        for (T node : nodes) {
-            transformed.add(node);
-        }
-        return transformed;
+    /**
+     * Parse into a {@link FlatAst}, flattening each statement as soon as it has been parsed.
+     */
+    public FlatAst parseFlat() {
+        FlatAst.Builder builder = new FlatAst.Builder();
+        statements().forEachRemaining(builder::addStatement);
+        return builder.build();
     }
 
 }
@@ -0,0 +1,55 @@
+package org.byteworks.xl.parser.node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.byteworks.parser.Node;
+import org.byteworks.parser.NodeList;
+
+/**
+ * Two or more comma separated arguments. A parenthesized argument list inside another one is merged into it, so
+ * f((1, 2), 3) has three arguments.
+ */
+public class ArgumentListNode extends ExpressionNode {
+    private final Node[] arguments;
+
+    public ArgumentListNode(final Node first, final NodeList<Node> rest) {
+        List<Node> arguments = new ArrayList<>(rest.getNodes().size() + 1);
+        add(arguments, first);
+        for (Node argument : rest.getNodes()) {
+            add(arguments, argument);
+        }
+        this.arguments = arguments.toArray(new Node[0]);
+    }
+
+    private static void add(List<Node> arguments, Node argument) {
+        if (argument instanceof ArgumentListNode) {
+            for (Node nested : ((ArgumentListNode) argument).arguments) {
+                arguments.add(nested);
+            }
+        } else {
+            arguments.add(argument);
+        }
+    }
+
+    public int size() {
+        return arguments.length;
+    }
+
+    public Node get(int index) {
+        return arguments[index];
+    }
+
+    public List<Node> getArguments() {
+        return Collections.unmodifiableList(Arrays.asList(arguments));
+    }
+
+    @Override
+    public String toString() {
+        return Stream.of(arguments).map(Object::toString).collect(Collectors.joining(", "));
+    }
+}
@@ -13,7 +13,7 @@ public class ExpressionListNode extends ExpressionNode {
     }
 
     ExpressionListNode(final List<ExpressionNode> list) {
-        this.list = list;
+        this.list = List.copyOf(list);
     }
 
     public List<ExpressionNode> getList() {
@@ -2,5 +2,9 @@ package org.byteworks.xl.parser.node;
 
 import org.byteworks.parser.Node;
 
+/**
+ * Base class of the XL syntax tree. Nodes are immutable once built, so a parsed tree can be cached and shared between
+ * threads and interpreters.
+ */
 public class ExpressionNode extends Node {
 }
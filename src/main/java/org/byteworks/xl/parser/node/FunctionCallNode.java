@@ -1,24 +1,29 @@
 package org.byteworks.xl.parser.node;
 
+import org.byteworks.lexer.Symbol;
 import org.byteworks.parser.Node;
 
 public class FunctionCallNode extends ExpressionNode {
-    private final String name;
+    private final Symbol name;
     private final Node arguments;
 
     public FunctionCallNode(final IdentifierNode name, final Node arguments) {
-        this(name.getChars(), arguments);
+        this(name.getSymbol(), arguments);
     }
 
-    FunctionCallNode(final String name, final Node arguments) {
+    FunctionCallNode(final Symbol name, final Node arguments) {
         this.name = name;
         this.arguments = arguments;
     }
 
-    public String getName() {
+    public Symbol getSymbol() {
         return name;
     }
 
+    public String getName() {
+        return name.name();
+    }
+
     public Node getArguments() {
         return arguments;
     }
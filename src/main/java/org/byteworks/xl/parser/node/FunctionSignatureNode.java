@@ -10,8 +10,8 @@ public class FunctionSignatureNode extends ExpressionNode {
     private final List<IdentifierNode> returnTypes;
 
     public FunctionSignatureNode(final NodeList<TypeExpressionNode> parameterTypes, final NodeList<IdentifierNode> returnTypes) {
-        this.parameterTypes = parameterTypes.getNodes();
-        this.returnTypes = returnTypes.getNodes();
+        this.parameterTypes = List.copyOf(parameterTypes.getNodes());
+        this.returnTypes = List.copyOf(returnTypes.getNodes());
     }
 
     public List<TypeExpressionNode> getParameterTypes() {
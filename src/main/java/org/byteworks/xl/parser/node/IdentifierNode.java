@@ -1,24 +1,30 @@
 package org.byteworks.xl.parser.node;
 
+import org.byteworks.lexer.Lexer;
+import org.byteworks.lexer.Symbol;
 import org.byteworks.lexer.Token;
 
 public class IdentifierNode extends ExpressionNode {
-    private final String chars;
+    private final Symbol symbol;
 
     public IdentifierNode(final Token token) {
-        this(token.getChars());
+        this(((Lexer.Identifier) token).getSymbol());
     }
 
-    IdentifierNode(final String chars) {
-        this.chars = chars;
+    IdentifierNode(final Symbol symbol) {
+        this.symbol = symbol;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
     }
 
     public String getChars() {
-        return chars;
+        return symbol.name();
     }
 
     @Override
     public String toString() {
-        return chars;
+        return symbol.name();
     }
 }
@@ -1,24 +1,41 @@
 package org.byteworks.xl.parser.node;
 
+import org.byteworks.lexer.Lexer;
 import org.byteworks.lexer.Token;
 
 public class LiteralNode extends ExpressionNode {
-    private final String value;
+    private final String chars;
+    private final long value;
+    // what the interpreter that last evaluated this literal made of it
+    private Object boxed;
 
     public LiteralNode(final Token token) {
-        this(token.getChars());
+        this(token.getChars(), ((Lexer.Number) token).getValue());
     }
 
-    LiteralNode(final String value) {
+    LiteralNode(final String chars, final long value) {
+        this.chars = chars;
         this.value = value;
     }
 
-    public String getValue() {
+    public String getChars() {
+        return chars;
+    }
+
+    public long getValue() {
         return value;
     }
 
+    public Object getBoxed() {
+        return boxed;
+    }
+
+    public void setBoxed(final Object boxed) {
+        this.boxed = boxed;
+    }
+
     @Override
     public String toString() {
-        return value;
+        return chars;
     }
 }
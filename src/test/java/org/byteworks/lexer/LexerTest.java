@@ -1,9 +1,29 @@
 package org.byteworks.lexer;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class LexerTest {
+    @TempDir
+    Path tempDir;
+
     @Test
     void parsesPaddedNumber() {
         Lexer testObj = new Lexer("  23  ");
@@ -12,4 +32,166 @@ class LexerTest {
         Lexer.Number num = (Lexer.Number) next;
         Assertions.assertEquals("23", num.getChars());
     }
+
+    @Test
+    void parsesNumberValueWhenLexing() {
+        Lexer testObj = new Lexer("9223372036854775807 9223372036854775808");
+        Assertions.assertEquals(Long.MAX_VALUE, ((Lexer.Number) testObj.next()).getValue());
+        Lexer.Number tooBig = (Lexer.Number) testObj.next();
+        Assertions.assertEquals("9223372036854775808", tooBig.getChars());
+        Assertions.assertThrows(IllegalStateException.class, tooBig::getValue);
+    }
+
+    @Test
+    void peekLooksAheadWithoutRescanning() {
+        Lexer testObj = new Lexer("x = 3 + 4");
+        Assertions.assertEquals(TokenType.IDENTIFIER, testObj.peek().getType());
+        Assertions.assertEquals(TokenType.ASSIGNMENT, testObj.peek(1).getType());
+        Assertions.assertEquals(TokenType.NUMBER, testObj.peek(2).getType());
+        Assertions.assertEquals(3, testObj.getScanCount());
+        Assertions.assertEquals("x", testObj.next().getChars());
+        Assertions.assertTrue(testObj.consumeIf(TokenType.ASSIGNMENT));
+        Assertions.assertEquals("3", testObj.next().getChars());
+        Assertions.assertEquals(3, testObj.getScanCount());
+        Assertions.assertEquals(TokenType.PLUS, testObj.next().getType());
+        Assertions.assertEquals(4, testObj.getScanCount());
+    }
+
+    @Test
+    void rejectsLookaheadBeyondBuffer() {
+        Lexer testObj = new Lexer("1 2 3", 2);
+        Assertions.assertEquals("2", testObj.peek(1).getChars());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> testObj.peek(2));
+    }
+
+    @Test
+    void tokenStreamMatchesLexer() {
+        String input = "f = fn x:Number -> Number { x * 10 }\nf(6) --> 23";
+        TokenStream stream = TokenStream.of(input);
+        Lexer lexer = new Lexer(input);
+        for (int i = 0; i < stream.size(); i++) {
+            Token token = lexer.next();
+            Assertions.assertEquals(token.getType(), stream.type(i));
+            Assertions.assertEquals(token.getChars(), stream.token(i).getChars());
+        }
+        Assertions.assertEquals(TokenType.EOF, stream.type(stream.size() - 1));
+        Assertions.assertEquals(TokenType.EOF, lexer.next().getType());
+    }
+
+    @Test
+    void tokenStreamExposesCharsAsView() {
+        TokenStream stream = TokenStream.of("  abc = 123");
+        Assertions.assertEquals(2, stream.start(0));
+        Assertions.assertEquals(3, stream.length(0));
+        Assertions.assertEquals("abc", stream.chars(0).toString());
+        Assertions.assertEquals("123", stream.chars(2).toString());
+    }
+
+    @Test
+    void fallsBackToUnicodeClassesOutsideAscii() {
+        Lexer testObj = new Lexer("gr\u00f6\u00dfe\u2003=\u2003\u0664\u0662 \u00a7");
+        Token ident = testObj.next();
+        Assertions.assertEquals(TokenType.IDENTIFIER, ident.getType());
+        Assertions.assertEquals("gr\u00f6\u00dfe", ident.getChars());
+        Assertions.assertEquals(TokenType.ASSIGNMENT, testObj.next().getType());
+        Token number = testObj.next();
+        Assertions.assertEquals(TokenType.NUMBER, number.getType());
+        Assertions.assertEquals("\u0664\u0662", number.getChars());
+        Assertions.assertEquals(TokenType.UNKNOWN, testObj.next().getType());
+        Assertions.assertEquals(TokenType.EOF, testObj.next().getType());
+    }
+
+    @ParameterizedTest(name = "{index} buffer size {0}")
+    @ValueSource(ints = {1, 2, 3, 5, 8, 64})
+    void lexesTokensAcrossBufferBoundaries(int bufferSize) {
+        String input = "f = fn count:Number -> Number { count * 100 }\n  f(12345) --> x_y\n";
+        Lexer expected = new Lexer(input);
+        Lexer testObj = new Lexer(new StringReader(input), bufferSize);
+        Token token;
+        do {
+            token = testObj.next();
+            Token expectedToken = expected.next();
+            Assertions.assertEquals(expectedToken.getType(), token.getType());
+            Assertions.assertEquals(expectedToken.getChars(), token.getChars());
+        } while (token.getType() != TokenType.EOF);
+    }
+
+    @Test
+    void lexesUtf8Channel() {
+        byte[] bytes = "gr\u00f6\u00dfe = 42\n".getBytes(StandardCharsets.UTF_8);
+        Lexer testObj = new Lexer(Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8);
+        Assertions.assertEquals("gr\u00f6\u00dfe", testObj.next().getChars());
+        Assertions.assertEquals(TokenType.ASSIGNMENT, testObj.next().getType());
+        Assertions.assertEquals("42", testObj.next().getChars());
+        Assertions.assertEquals(TokenType.EOF, testObj.next().getType());
+    }
+
+    @ParameterizedTest(name = "{index} buffer size {0}")
+    @ValueSource(ints = {1, 2, 3, 64})
+    void lexesUtf8BytesInPlace(int bufferSize) {
+        String input = "\u00e9t\u00e9 = \u0101\u0101\u0101 + x\n\u4e2d\u6587";
+        ByteBuffer bytes = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+        Lexer expected = new Lexer(input);
+        Lexer testObj = new Lexer(new ByteBufferReader(bytes), bufferSize);
+        Token token;
+        do {
+            token = testObj.next();
+            Token expectedToken = expected.next();
+            Assertions.assertEquals(expectedToken.getType(), token.getType());
+            Assertions.assertEquals(expectedToken.getChars(), token.getChars());
+        } while (token.getType() != TokenType.EOF);
+    }
+
+    @Test
+    void lexesMappedFile() throws IOException {
+        Path script = tempDir.resolve("script.xl");
+        Files.writeString(script, "x = 3\ny\u00e9 = x * 2\n", StandardCharsets.UTF_8);
+        Lexer testObj = Lexer.map(script);
+        Assertions.assertEquals("x", testObj.next().getChars());
+        Assertions.assertTrue(testObj.consumeIf(TokenType.ASSIGNMENT));
+        Assertions.assertEquals("3", testObj.next().getChars());
+        Assertions.assertTrue(testObj.consumeIf(TokenType.EOL));
+        Assertions.assertEquals("y\u00e9", testObj.next().getChars());
+    }
+
+    @Test
+    void internsIdentifiersToSymbols() {
+        Lexer testObj = new Lexer("lexerTestSymbol = lexerTestSymbol + lexerTestOther");
+        Symbol first = ((Lexer.Identifier) testObj.next()).getSymbol();
+        testObj.next();
+        Symbol second = ((Lexer.Identifier) testObj.next()).getSymbol();
+        testObj.next();
+        Symbol other = ((Lexer.Identifier) testObj.next()).getSymbol();
+        Assertions.assertSame(first, second);
+        Assertions.assertSame(first, Symbol.intern("lexerTestSymbol"));
+        Assertions.assertNotSame(first, other);
+        Assertions.assertNotEquals(first.id(), other.id());
+        Assertions.assertTrue(other.id() < Symbol.count());
+    }
+
+    @Test
+    void internsConcurrentlyToOneSymbolPerName() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Symbol[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    Symbol[] symbols = new Symbol[5000];
+                    for (int i = 0; i < symbols.length; i++) {
+                        symbols[i] = Symbol.intern("concurrent" + i);
+                    }
+                    return symbols;
+                }));
+            }
+            Symbol[] expected = results.get(0).get();
+            for (Future<Symbol[]> result : results) {
+                Symbol[] symbols = result.get();
+                for (int i = 0; i < symbols.length; i++) {
+                    Assertions.assertSame(expected[i], symbols[i]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
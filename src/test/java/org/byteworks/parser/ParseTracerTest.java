@@ -0,0 +1,52 @@
+package org.byteworks.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.byteworks.lexer.Lexer;
+import org.byteworks.lexer.TokenType;
+import org.byteworks.parser.rule.PassThrough;
+import org.byteworks.xl.parser.XLParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ParseTracerTest {
+    @Test
+    void hasNoTracerUnlessEnabled() {
+        Parser<?> parser = XLParser.createParser(new Lexer("1 + 2"), System.out);
+        parser.parse();
+        Assertions.assertEquals(ParseTracer.ENABLED, parser.getTracer() != null);
+    }
+
+    @Test
+    void totalsNestedRules() {
+        PassThrough<Object> outer = new PassThrough<>(1);
+        PassThrough<Object> inner = new PassThrough<>(2);
+        ParseTracer tracer = new ParseTracer(2);
+        tracer.enter(0, outer, TokenType.PLUS);
+        tracer.enter(1, inner, TokenType.NUMBER);
+        tracer.exit(1);
+        tracer.enter(1, inner, TokenType.NUMBER);
+        tracer.exit(1);
+        tracer.exit(0);
+
+        Assertions.assertEquals(3, tracer.getEvents());
+        List<ParseTracer.RuleStatistics> statistics = tracer.getStatistics();
+        Assertions.assertEquals(2, statistics.size());
+        ParseTracer.RuleStatistics first = statistics.get(0);
+        Assertions.assertSame(outer, first.getRule());
+        Assertions.assertEquals(TokenType.PLUS, first.getTokenType());
+        Assertions.assertEquals(1, first.getCount());
+        Assertions.assertEquals(0, first.getMaxDepth());
+        Assertions.assertTrue(first.getTotalNanos() >= statistics.get(1).getTotalNanos());
+        Assertions.assertEquals(2, statistics.get(1).getCount());
+        Assertions.assertEquals(1, statistics.get(1).getMaxDepth());
+
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        tracer.printEvents(new PrintStream(events, true));
+        // the ring buffer holds the last two events only
+        Assertions.assertEquals(2, events.toString().lines().count());
+        Assertions.assertTrue(events.toString().startsWith("1 PassThrough NUMBER 2 depth=1"));
+    }
+}
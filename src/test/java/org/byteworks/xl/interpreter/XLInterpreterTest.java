@@ -8,11 +8,17 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class XLInterpreterTest {
 
@@ -21,22 +27,37 @@ class XLInterpreterTest {
     private XLInterpreter testObj;
     private ByteArrayOutputStream baos;
 
-    private void setUp(String input) {
+    private void setUp(String input, XLInterpreter.Engine engine, XLInterpreter.Tier tier) {
         Lexer lexer = new Lexer(input);
         Parser<Node> parser = XLParser.createParser(lexer, System.out);
         nodes = parser.parse();
         baos = new ByteArrayOutputStream();
         ps = new PrintStream(baos);
-        testObj = new XLInterpreter();
+        testObj = new XLInterpreter(engine, tier);
     }
 
-    private String execute(String input) {
-        setUp(input);
+    private String execute(String input, XLInterpreter.Engine engine, XLInterpreter.Tier tier) {
+        setUp(input, engine, tier);
         testObj.exec(nodes, ps);
         ps.flush();
         return new String(baos.toByteArray());
     }
 
+    private String execute(String input, XLInterpreter.Engine engine) {
+        return execute(input, engine, XLInterpreter.Tier.INTERPRETED);
+    }
+
+    // run with every engine, and with functions compiled, which must all give the same output; testObj is left with the
+    // last engine's interpreter
+    private String execute(String input) {
+        String expected = execute(input, XLInterpreter.Engine.TREE);
+        assertEquals(expected, execute(input, XLInterpreter.Engine.TREE, XLInterpreter.Tier.COMPILED), "compiled functions");
+        for (XLInterpreter.Engine engine : XLInterpreter.Engine.values()) {
+            assertEquals(expected, execute(input, engine), engine + " engine");
+        }
+        return expected;
+    }
+
     @ParameterizedTest(name = "{index} {0}")
     @CsvSource({
             "addition, '1 + 2', '3: Number\n'",
@@ -68,9 +89,11 @@ class XLInterpreterTest {
             "post-decrement precedence, 'x = 3\nx---2', '3: Number\n1: Number\n', '2: Number'"
     })
     void interpretsVariableExpressions(String name, String input, String expectedOutput, String expectedVariableValue) {
-        String result = execute(input);
-        assertEquals(expectedOutput, result);
-        assertEquals(expectedVariableValue, testObj.interpreter.getVariable("x").toString());
+        for (XLInterpreter.Engine engine : XLInterpreter.Engine.values()) {
+            String result = execute(input, engine);
+            assertEquals(expectedOutput, result, engine + " engine");
+            assertEquals(expectedVariableValue, testObj.interpreter.getVariable("x").toString(), engine + " engine");
+        }
     }
 
     @Test
@@ -89,10 +112,125 @@ class XLInterpreterTest {
             "function call 3, 'f = fn x:Number -> Number { x * 10 }\nf(6)', '(Number -> Number): Number\n60: Number\n'",
             "function call 4, 'f = fn x:Number y:Number z:Number -> Number {x + y + z}\nf(6, 3 * 4, 2)', '(Number, Number, Number -> Number): Number, Number, Number\n20: Number\n'",
             "function call 5, 'f = fn -> { }', '(Unit -> Unit): Unit\n'",
-            "function call 5, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)', '(Number -> Number): Number\n6: Number\n16: Number\n'"
+            "function call 5, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)', '(Number -> Number): Number\n6: Number\n16: Number\n'",
+            "redefined function, 'f = fn x:Number -> Number { x }\nf(1)\nf = fn x:Number -> Number { x * 2 }\nf(1)', '(Number -> Number): Number\n1: Number\n(Number -> Number): Number\n2: Number\n'",
+            "redefined operator, 'add = fn x:Number y:Number -> Number { x * y }\n2 + 3', '(Number, Number -> Number): Number, Number\n6: Number\n'",
+            "sign of a function, 'f = fn x:Number -> Number { x }\ng = f\n+g', '(Number -> Number): Number\n(Number -> Number): Number\n(Number -> Number): Number\n'",
+            "redefined post-increment, 'postincrement = fn x:Number -> Number { x + 50 }\nx = 1\nx++\nx\n1++', '(Number -> Number): Number\n1: Number\n1: Number\n51: Number\n1: Number\n'",
+            "redefined post-decrement, 'postdecrement = fn x:Number -> Number { x - 50 }\nx = 1\nx--\nx', '(Number -> Number): Number\n1: Number\n1: Number\n-49: Number\n'",
+            "operator redefined after use, 'f = fn x:Number y:Number -> Number { x + y }\nf(2, 3)\nadd = fn x:Number y:Number -> Number { x * y }\nf(2, 3)', '(Number, Number -> Number): Number, Number\n5: Number\n(Number, Number -> Number): Number, Number\n6: Number\n'"
     })
     void executesFunctionCall(String name, String code, String expected) {
         String result = execute(code);
         assertEquals(expected, result);
     }
+
+    @ParameterizedTest(name = "{index} {0}")
+    @CsvSource({
+            "expression, '3 * 4 + 6 - 8 / 2 + -3 + +4'",
+            "variables, 'x = 3 + 4\n++x\n--x\nx++\nx--\nx * 2'",
+            "function calls, 'f = fn x:Number y:Number -> Number { x + y }\nf(3, 4)\ng = fn -> Number { 3 }\ng()'",
+            "function call with expr list, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)'"
+    })
+    void executesFlatTreeLikeNodes(String name, String code) {
+        String expected = execute(code);
+        baos = new ByteArrayOutputStream();
+        ps = new PrintStream(baos);
+        testObj = new XLInterpreter();
+        testObj.exec(XLParser.createParser(new Lexer(code), System.out).parseFlat(), ps);
+        ps.flush();
+        assertEquals(expected, new String(baos.toByteArray()));
+    }
+
+    @ParameterizedTest(name = "{index} {0}")
+    @CsvSource({
+            "expression, '3 * 4 + 6 - 8 / 2 + -3 + +4'",
+            "variables, 'x = 3 + 4\n++x\n--x\nx++\nx--\nx * 2'",
+            "function calls, 'f = fn x:Number y:Number -> Number { x + y }\nf(3, 4)\ng = fn -> Number { 3 }\ng()'",
+            "nested calls, 'f = fn x:Number -> Number { -x + x * 2 }\ng = fn y:Number -> Number { f(y * 2) }\ng(3)\ng(4)'"
+    })
+    void executesProgramReadBackLikeNodes(String name, String code) throws IOException {
+        String expected = execute(code);
+        ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+        Program.compile(XLParser.createParser(new Lexer(code), System.out).parse()).write(compiled);
+        baos = new ByteArrayOutputStream();
+        ps = new PrintStream(baos);
+        testObj = new XLInterpreter();
+        testObj.exec(Program.read(new ByteArrayInputStream(compiled.toByteArray())), ps);
+        ps.flush();
+        assertEquals(expected, new String(baos.toByteArray()));
+    }
+
+    @Test
+    void compilesFunctionsOnceTheyAreHot() {
+        StringBuilder code = new StringBuilder("f = fn x:Number -> Number { x * 2 + 1 }");
+        for (int i = 0; i <= XLInterpreter.JIT_THRESHOLD; i++) {
+            code.append("\nf(").append(i).append(')');
+        }
+        String interpreted = execute(code.toString(), XLInterpreter.Engine.TREE, XLInterpreter.Tier.INTERPRETED);
+        Type number = testObj.interpreter.getType("Number");
+        assertEquals(XLInterpreter.InterpretedFunction.class, testObj.interpreter.getFunction("f", number).getImpl().getClass());
+        assertEquals(interpreted, execute(code.toString(), XLInterpreter.Engine.TREE, XLInterpreter.Tier.ADAPTIVE));
+        number = testObj.interpreter.getType("Number");
+        Function function = testObj.interpreter.getFunction("f", number);
+        assertTrue(function.getImpl() instanceof JitFunction);
+        assertEquals(XLInterpreter.JIT_THRESHOLD + 1, function.getCalls());
+    }
+
+    @Test
+    void specializesOperatorsToTheTypesTheySee() {
+        execute("f = fn x:Number -> Number { y + x }\ny = 1\nf(2)", XLInterpreter.Engine.SPECIALIZING);
+        Type number = testObj.interpreter.getType("Number");
+        SpecializingCompiler.Root body = ((SpecializingCompiler.SpecializedFunction) testObj.interpreter.getFunction("f", number).getImpl()).body;
+        assertEquals("NumberBinaryOperator", body.getBody().getClass().getSimpleName());
+        assertEquals("3: Number\n", new String(baos.toByteArray()).split("\n", 3)[2]);
+
+        baos.reset();
+        testObj.exec(XLParser.createParser(new Lexer("f(3)\ny = fn -> Number { 1 }"), System.out).parse(), ps);
+        List<Node> call = XLParser.createParser(new Lexer("f(4)"), System.out).parse();
+        assertThrows(IllegalStateException.class, () -> testObj.exec(call, ps));
+        ps.flush();
+        assertEquals("4: Number\n(Unit -> Number): Unit\n", new String(baos.toByteArray()));
+        assertEquals("GenericBinaryOperator", body.getBody().getClass().getSimpleName());
+    }
+
+    @Test
+    void rejectsAssignmentToAnythingButAnIdentifier() {
+        for (XLInterpreter.Engine engine : XLInterpreter.Engine.values()) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> execute("3 = 4", engine), engine + " engine");
+            assertEquals("The left hand side of an assignment must be an identifier in expression (= 3 4)", e.getMessage(), engine + " engine");
+        }
+    }
+
+    @Test
+    void sharesTheValuesOfSmallNumbers() {
+        for (XLInterpreter.Engine engine : XLInterpreter.Engine.values()) {
+            assertEquals("1000: Number\n1024: Number\n", execute("x = 999 + 1\nx + 24", engine), engine + " engine");
+            assertSame(testObj.number(1000), testObj.interpreter.getVariable("x"), engine + " engine");
+        }
+        assertNotSame(testObj.number(1024), testObj.number(1024));
+        assertEquals(-128L, testObj.number(-128).getValue());
+        assertEquals(Long.MIN_VALUE, testObj.number(Long.MIN_VALUE).longValue());
+    }
+
+    @Test
+    void boxesEachLiteralOnce() {
+        setUp("x = 5000", XLInterpreter.Engine.TREE, XLInterpreter.Tier.INTERPRETED);
+        testObj.exec(nodes, ps);
+        Value first = testObj.interpreter.getVariable("x");
+        testObj.exec(nodes, ps);
+        assertSame(first, testObj.interpreter.getVariable("x"));
+        XLInterpreter other = new XLInterpreter(XLInterpreter.Engine.TREE, XLInterpreter.Tier.INTERPRETED);
+        other.exec(nodes, ps);
+        assertSame(other.interpreter.getType(XLInterpreter.TYPE_NUMBER), other.interpreter.getVariable("x").getType());
+    }
+
+    @Test
+    void executesStatementsAsTheyAreParsed() {
+        setUp("", XLInterpreter.Engine.TREE, XLInterpreter.Tier.INTERPRETED);
+        Parser<Node> parser = XLParser.createParser(new Lexer("x = 3 + 4\nx * 2\n* 4"), System.out);
+        assertThrows(IllegalArgumentException.class, () -> testObj.exec(parser.statements(), ps));
+        ps.flush();
+        assertEquals("7: Number\n14: Number\n", new String(baos.toByteArray()));
+    }
 }
@@ -1,13 +1,33 @@
 package org.byteworks.xl.parser;
 
 import org.byteworks.lexer.Lexer;
+import org.byteworks.lexer.TokenStream;
+import org.byteworks.lexer.TokenType;
 import org.byteworks.parser.Node;
 import org.byteworks.parser.Parser;
+import org.byteworks.xl.parser.node.ArgumentListNode;
+import org.byteworks.xl.parser.node.BinaryOpNode;
+import org.byteworks.xl.parser.node.ExpressionListNode;
+import org.byteworks.xl.parser.node.FunctionCallNode;
+import org.byteworks.xl.parser.node.FunctionDeclarationNode;
+import org.byteworks.xl.parser.node.NegativeSignedNode;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 class XLParserTest {
@@ -36,6 +56,7 @@ class XLParserTest {
             "function call 2, 'f()', '(f ())'",
             "function call 3, 'f(2)', '(f (2))'",
             "function call 4, 'f(3, 3 * 4, 5)', '(f (3, (* 3 4), 5))'",
+            "function call 5, 'f((1, 2), 3)', '(f (1, 2, 3))'",
             "expr list 1, 'x = { 3 * 4\n4 + 2 }', '(= x { (* 3 4),(+ 4 2) })'",
             "function call with expr list, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)', '(= f fn x:Number -> Number { (+ x 10) }), (= n { (* 3 4),(+ 4 2) }), (f (n))'",
     })
@@ -47,4 +68,367 @@ class XLParserTest {
         Assertions.assertEquals(expected, result);
     }
 
+    @ParameterizedTest(name = "{index} {0}")
+    @CsvSource({
+            "expression, '4 * 1 + 2 * 3'",
+            "assignments, 'x = 3\nx * 2\n++x'",
+            "function definition and call, 'f = fn x:Number y:Number -> Number { x + y }\nf(3, 4)'",
+            "expr list, 'x = { 3 * 4\n4 + 2 }'",
+    })
+    void scansEachTokenOnce(String name, String input) {
+        int tokens = 1;
+        Lexer counter = new Lexer(input);
+        while (counter.next().getType() != TokenType.EOF) {
+            tokens++;
+        }
+        Lexer lexer = new Lexer(input);
+        XLParser.createParser(lexer, System.out).parse();
+        Assertions.assertEquals(tokens, lexer.getScanCount());
+    }
+
+    @ParameterizedTest(name = "{index} {0}")
+    @CsvSource({
+            "expression, '4 * 1 + 2 * 3', '(+ (* 4 1) (* 2 3))'",
+            "function call, 'f(3, 3 * 4, 5)', '(f (3, (* 3 4), 5))'",
+            "function call with expr list, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)', '(= f fn x:Number -> Number { (+ x 10) }), (= n { (* 3 4),(+ 4 2) }), (f (n))'",
+    })
+    void parsesTokenStream(String name, String input, String expected) {
+        Parser<Node> parser = XLParser.createParser(TokenStream.of(input).cursor(), System.out);
+        List<Node> ast = parser.parse();
+        String result = ast.stream().map(Object::toString).collect(Collectors.joining(", "));
+        Assertions.assertEquals(expected, result);
+    }
+
+    @ParameterizedTest(name = "{index} {0}")
+    @CsvSource({
+            "expression, '4 * 1 + 2 * 3 - -5 / 2'",
+            "unary operators, 'x = 3\n++x\n--x\nx++\nx--\n+x'",
+            "function definition, 'f = fn x:Number y:Number -> Number { x + y }'",
+            "function definition without parameters, 'f = fn -> { g() }'",
+            "function call, 'f(3, 3 * 4, 5)'",
+            "function call with expr list, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)'",
+    })
+    void flattensToEquivalentTree(String name, String input) {
+        String expected = XLParser.createParser(new Lexer(input), System.out).parse().toString();
+        FlatAst flat = XLParser.createParser(new Lexer(input), System.out).parseFlat();
+        Assertions.assertEquals(expected, flat.toString());
+    }
+
+    @Test
+    void flattensChildrenBeforeParents() {
+        FlatAst flat = XLParser.createParser(new Lexer("x = 3 * (4 + y)"), System.out).parseFlat();
+        Assertions.assertEquals(1, flat.statementCount());
+        int assignment = flat.statement(0);
+        Assertions.assertEquals(FlatAst.ASSIGNMENT, flat.kind(assignment));
+        Assertions.assertEquals(flat.size() - 1, assignment);
+        int multiply = flat.right(assignment);
+        Assertions.assertEquals(FlatAst.MULTIPLY, flat.kind(multiply));
+        Assertions.assertEquals(3, flat.literal(flat.left(multiply)));
+        Assertions.assertTrue(flat.right(multiply) < multiply);
+        Assertions.assertEquals("y", flat.symbol(flat.right(flat.right(multiply))).name());
+    }
+
+    @Test
+    void loadsCompiledTreeUntilSourceChanges(@TempDir Path dir) throws IOException {
+        Path source = dir.resolve("lib.xl");
+        Files.writeString(source, "f = fn x:Number -> Number { x * 2 }\nf(3, 4)\n");
+        FlatAst parsed = CompiledAst.load(source, System.out);
+        Path compiled = dir.resolve("lib.xlc");
+        Assertions.assertTrue(Files.exists(compiled));
+        int checksum = CompiledAst.checksum(ByteBuffer.wrap(Files.readAllBytes(source)));
+        FlatAst loaded = CompiledAst.read(compiled, checksum);
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals(parsed.toString(), loaded.toString());
+        Assertions.assertNull(CompiledAst.read(compiled, checksum + 1));
+
+        byte[] damaged = Files.readAllBytes(compiled);
+        damaged[damaged.length / 2] ^= 1;
+        Files.write(compiled, damaged);
+        Assertions.assertNull(CompiledAst.read(compiled, checksum));
+
+        Files.writeString(source, "f(1)\n");
+        Assertions.assertEquals("[(f (1))]", CompiledAst.load(source, System.out).toString());
+        Assertions.assertEquals("[(f (1))]", CompiledAst.load(source, System.out).toString());
+    }
+
+    @Test
+    void hashConsesRepeatedSubexpressions() {
+        NodeInterner interner = new NodeInterner();
+        Node node = XLParser.createParser(new Lexer("x = (a * b + c) * (a * b + c)"), System.out, interner).parse(0);
+        Assertions.assertEquals("(= x (* (+ (* a b) c) (+ (* a b) c)))", node.toString());
+        BinaryOpNode product = (BinaryOpNode) ((BinaryOpNode) node).getRhs();
+        Assertions.assertSame(product.getLhs(), product.getRhs());
+        Node again = XLParser.createParser(new Lexer("a * b + c"), System.out, interner).parse(0);
+        Assertions.assertSame(product.getLhs(), again);
+        Node unshared = XLParser.createParser(new Lexer("a * b + c"), System.out).parse(0);
+        Assertions.assertNotSame(again, unshared);
+    }
+
+    @ParameterizedTest(name = "{index} {0}")
+    @CsvSource({
+            "literals, '7 + 007 + 7'",
+            "unary operators, 'x = 3\n++x\nx++\n-x\n-x'",
+            "function call with expr list, 'f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n3 * 4 }\nf(n)'",
+    })
+    void hashConsingKeepsTree(String name, String input) {
+        String expected = XLParser.createParser(new Lexer(input), System.out).parse().toString();
+        List<Node> ast = XLParser.createParser(new Lexer(input), System.out, new NodeInterner()).parse();
+        Assertions.assertEquals(expected, ast.toString());
+    }
+
+    @Test
+    void streamsStatementsLazily() {
+        Parser<Node> parser = XLParser.createParser(new Lexer("x = 1 + 2\nx * 3\n* 4"), System.out);
+        Iterator<Node> statements = parser.statements();
+        Assertions.assertEquals("(= x (+ 1 2))", statements.next().toString());
+        Assertions.assertEquals("(* x 3)", statements.next().toString());
+        Assertions.assertTrue(statements.hasNext());
+        Assertions.assertThrows(IllegalArgumentException.class, statements::next);
+    }
+
+    @Test
+    void streamsStatements() {
+        String input = "f = fn x:Number -> Number { x + 10 }\nn = { 3 * 4\n4 + 2 }\nf(n)";
+        String expected = XLParser.createParser(new Lexer(input), System.out).parse().toString();
+        List<Node> streamed = XLParser.createParser(new Lexer(input), System.out).stream().collect(Collectors.toList());
+        Assertions.assertEquals(expected, streamed.toString());
+    }
+
+    @Test
+    void splitsOnlyBetweenCompleteTopLevelStatements() {
+        String input = "x = 1\nf = fn x:Number -> Number { x + 1\nx * 2 }\ny = (1 +\n2)\nz = 3 -\n4\ng = fn a:Number -> N\nmber { a }\nh) = fn p:Number -> Number { 1\n2 }\n3\nh = fn\nf(y)\n";
+        int[] splits = ParallelParser.splitPoints(input, input.length());
+        List<String> splitAfter = new ArrayList<>();
+        for (int split : splits) {
+            splitAfter.add(input.substring(input.lastIndexOf('\n', split - 1) + 1, split));
+        }
+        Assertions.assertEquals(List.of("x = 1", "x * 2 }", "2)", "4", "mber { a }", "2 }", "3"), splitAfter);
+    }
+
+    @Test
+    void parsesInParallel() {
+        StringBuilder sb = new StringBuilder("f = fn x:Number y:Number -> Number { x * y\nx + y }\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append("v").append((char) ('a' + i % 26)).append(" = (").append(i).append(" + 2) * -").append(i % 7).append('\n');
+            sb.append("f(").append(i).append(", 3 *\n4)\n");
+        }
+        String input = sb.toString();
+        String expected = XLParser.createParser(new Lexer(input), System.out).parse().toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assertions.assertEquals(expected, new ParallelParser(pool, System.out).parse(input).toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void reparsesOnlyEditedStatements() {
+        String input = "x = 1\ny = x * 2\nf = fn a:Number -> Number { a + 1 }\nf(y)\n";
+        IncrementalParser parser = new IncrementalParser(input, System.out);
+        Assertions.assertEquals(4, parser.segments().size());
+        List<Node> before = parser.statements();
+
+        int at = input.indexOf("2");
+        parser.edit(at, at + 1, "20");
+        Assertions.assertEquals(1, parser.getReparsed());
+        Assertions.assertEquals("y = x * 20\n", parser.segments().get(1).getText());
+        Assertions.assertEquals(input.indexOf("f ="), parser.start(2) - 1);
+        List<Node> after = parser.statements();
+        Assertions.assertEquals("[(= x 1), (= y (* x 20)), (= f fn a:Number -> Number { (+ a 1) }), (f (y))]", after.toString());
+        Assertions.assertSame(before.get(0), after.get(0));
+        Assertions.assertNotSame(before.get(1), after.get(1));
+        Assertions.assertSame(before.get(2), after.get(2));
+        Assertions.assertSame(before.get(3), after.get(3));
+    }
+
+    @Test
+    void reparsesFollowingStatementsWhoseBoundariesMove() {
+        String input = "x = 1\ny = 2\nz = 3\n";
+        IncrementalParser parser = new IncrementalParser(input, System.out);
+        // an unclosed brace joins the following lines into one statement until it is closed
+        parser.edit(4, 5, "{ 1");
+        Assertions.assertEquals(1, parser.segments().size());
+        Assertions.assertNotNull(parser.segments().get(0).getError());
+        parser.edit(parser.length() - 1, parser.length(), " }\n");
+        Assertions.assertEquals("x = { 1\ny = 2\nz = 3 }\n", parser.source());
+        Assertions.assertEquals(XLParser.createParser(new Lexer(parser.source()), System.out).parse().toString(), parser.statements().toString());
+        parser.edit(0, parser.length(), "");
+        Assertions.assertEquals(List.of(), parser.statements());
+        parser.edit(0, 0, "x = 4");
+        Assertions.assertEquals("[(= x 4)]", parser.statements().toString());
+    }
+
+    @Test
+    void reparsesAfterAStrayClosingParenthesis() {
+        IncrementalParser parser = new IncrementalParser("x = 1\nf = fn p:Number -> Number { 1\n2 }\ny = 3\n", System.out);
+        parser.edit(7, 7, ")");
+        Assertions.assertEquals(XLParser.createParser(new Lexer(parser.source()), System.out).parse().toString(), parser.statements().toString());
+        Assertions.assertEquals(3, parser.statements().size());
+    }
+
+    @Test
+    void keepsParsingAroundAnIncompleteStatement() {
+        IncrementalParser parser = new IncrementalParser("x = 1\ny = 2\n", System.out);
+        parser.edit(6, 11, "y = * 2");
+        Assertions.assertNotNull(parser.segments().get(1).getError());
+        Assertions.assertEquals("[(= x 1)]", parser.statements().toString());
+        parser.edit(10, 10, "3");
+        Assertions.assertNull(parser.segments().get(1).getError());
+        Assertions.assertEquals("[(= x 1), (= y (* 3 2))]", parser.statements().toString());
+    }
+
+    @Test
+    void rejectsLiteralOutOfRange() {
+        Parser<Node> parser = XLParser.createParser(new Lexer("x = 99999999999999999999"), System.out);
+        Assertions.assertThrows(IllegalStateException.class, parser::parse);
+    }
+
+    @Test
+    void sharesGrammarAcrossThreads() throws Exception {
+        String input = "f = fn x:Number y:Number -> Number { x + y }\nn = { 3 * 4\n4 + 2 }\nf(n, -2 * (3 + 1))";
+        String expected = XLParser.createParser(new Lexer(input), System.out).parse().toString();
+        Assertions.assertSame(XLParser.grammar(), XLParser.createParser(new Lexer(input), System.out).getGrammar());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (!expected.equals(XLParser.createParser(new Lexer(input), System.out).parse().toString())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void cachesParsedSource() {
+        ParseCache cache = new ParseCache(8, 1000, System.out);
+        List<Node> first = cache.parse("x = 3 * (4 + 9)");
+        List<Node> second = cache.parse("x = 3 * (4 + 9)");
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals("[(= x (* 3 (+ 4 9)))]", second.toString());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.add(first.get(0)));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() {
+        ParseCache cache = new ParseCache(2, 1000, System.out);
+        cache.parse("1 + 2");
+        cache.parse("3 + 4");
+        cache.parse("1 + 2");
+        cache.parse("5 + 6");
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getEvictions());
+        cache.parse("1 + 2");
+        cache.parse("3 + 4");
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    void evictsBySourceLength() {
+        ParseCache cache = new ParseCache(100, 12, System.out);
+        cache.parse("1 + 2");
+        cache.parse("3 + 4");
+        cache.parse("5 + 6");
+        Assertions.assertEquals(2, cache.size());
+        cache.parse("x = 1 + 2 + 3 + 4");
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void persistsParsedSourceAcrossCaches(@TempDir Path dir) throws IOException {
+        DiskParseCache cache = new DiskParseCache(dir, 1_000_000, System.out);
+        Assertions.assertEquals("[(= x (* 3 (+ 4 9)))]", cache.parse("x = 3 * (4 + 9)").toString());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        DiskParseCache restarted = new DiskParseCache(dir, 1_000_000, System.out);
+        Assertions.assertEquals(cache.size(), restarted.size());
+        Assertions.assertEquals("[(= x (* 3 (+ 4 9)))]", restarted.parse("x = 3 * (4 + 9)").toString());
+        Assertions.assertEquals(1, restarted.getHits());
+        Assertions.assertEquals(0, restarted.getMisses());
+        Assertions.assertEquals(restarted.size(), restarted.getBytesRead());
+    }
+
+    @Test
+    void evictsCacheFilesOverSizeLimit(@TempDir Path dir) throws IOException {
+        DiskParseCache probe = new DiskParseCache(dir.resolve("probe"), 1_000_000, System.out);
+        probe.parse("1 + 2");
+        long fileSize = probe.size();
+        DiskParseCache cache = new DiskParseCache(dir.resolve("cache"), 2 * fileSize, System.out);
+        cache.parse("1 + 2");
+        cache.parse("3 + 4");
+        cache.parse("5 + 6");
+        Assertions.assertEquals(1, cache.getEvictions());
+        Assertions.assertEquals(2 * fileSize, cache.size());
+        Assertions.assertEquals(2, dir.resolve("cache").toFile().list().length);
+    }
+
+    @Test
+    void cachedNodeListsAreUnmodifiable() {
+        ParseCache cache = new ParseCache(8, 1000, System.out);
+        List<Node> ast = cache.parse("f = fn x:Number -> Number { x + 10 }");
+        Assertions.assertEquals("[(= f fn x:Number -> Number { (+ x 10) })]", ast.toString());
+        FunctionDeclarationNode function = (FunctionDeclarationNode) ((BinaryOpNode) ast.get(0)).getRhs();
+        ExpressionListNode body = (ExpressionListNode) function.getBody();
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> function.getFunctionSignature().getParameterTypes().clear());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> body.getList().clear());
+    }
+
+    @Test
+    void parsesDeeplyNestedParentheses() {
+        int depth = 100_000;
+        String input = "(".repeat(depth) + "1 + 2" + ")".repeat(depth);
+        List<Node> ast = XLParser.createParser(new Lexer(input), System.out).parse();
+        Assertions.assertEquals("[(+ 1 2)]", ast.toString());
+    }
+
+    @Test
+    void parsesArgumentsIntoOneList() {
+        int count = 100_000;
+        StringBuilder input = new StringBuilder("f(0");
+        for (int i = 1; i < count; i++) {
+            input.append(", ").append(i);
+        }
+        input.append(')');
+        FunctionCallNode call = (FunctionCallNode) XLParser.createParser(new Lexer(input.toString()), System.out).parse(0);
+        ArgumentListNode arguments = (ArgumentListNode) call.getArguments();
+        Assertions.assertEquals(count, arguments.size());
+        Assertions.assertEquals("0", arguments.get(0).toString());
+        Assertions.assertEquals(String.valueOf(count - 1), arguments.get(count - 1).toString());
+    }
+
+    @Test
+    void parsesDeeplyNestedPrefixOperators() {
+        int depth = 100_000;
+        Node node = XLParser.createParser(new Lexer("- ".repeat(depth) + "1"), System.out).parse(0);
+        int nested = 0;
+        while (node instanceof NegativeSignedNode) {
+            node = ((NegativeSignedNode) node).getExpr();
+            nested++;
+        }
+        Assertions.assertEquals(depth, nested);
+        Assertions.assertEquals("1", node.toString());
+    }
+
+    @Test
+    void recoversAfterParseError() {
+        Lexer lexer = new Lexer("1 + )\n3 * 4");
+        Parser<Node> parser = XLParser.createParser(lexer, System.out);
+        Assertions.assertThrows(IllegalStateException.class, () -> parser.parse(0));
+        Assertions.assertEquals("(* 3 4)", parser.parse(0).toString());
+    }
 }